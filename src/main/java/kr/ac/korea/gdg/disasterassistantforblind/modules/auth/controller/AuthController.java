@@ -9,7 +9,10 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security.JwtTokenProvider;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security.PasswordHashingExecutor;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.service.RefreshTokenService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,25 +20,35 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
 @Tag(name = "Authentication", description = "Authentication API")
 public class AuthController {
 
+    @Value("${auth.hashing.retry-after-seconds:2}")
+    private int loginRetryAfterSeconds;
+
     private final UserService userService;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final RefreshTokenService refreshTokenService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
-    public AuthController(UserService userService, AuthenticationManager authenticationManager, JwtTokenProvider jwtTokenProvider) {
+    public AuthController(UserService userService, AuthenticationManager authenticationManager, JwtTokenProvider jwtTokenProvider,
+                          RefreshTokenService refreshTokenService, PasswordHashingExecutor passwordHashingExecutor) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.refreshTokenService = refreshTokenService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
     }
 
     /**
@@ -75,43 +88,110 @@ public class AuthController {
         @ApiResponse(responseCode = "200", description = "User authenticated successfully", 
                     content = @Content(mediaType = "application/json")),
         @ApiResponse(responseCode = "401", description = "Invalid credentials", 
+                    content = @Content),
+        @ApiResponse(responseCode = "503", description = "Too many concurrent logins, retry later", 
                     content = @Content)
     })
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(
             @Parameter(description = "Login credentials (id and password)", required = true)
             @RequestBody Map<String, String> loginRequest) {
-        try {
-            // Accept either id or email for backward compatibility
-            String id = loginRequest.get("id");
-            String password = loginRequest.get("password");
+        // Accept either id or email for backward compatibility
+        String id = loginRequest.get("id");
+        String password = loginRequest.get("password");
 
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(id, password));
+        // BCrypt runs on the bounded hashing pool, the request thread is released meanwhile;
+        // the user read and the refresh token insert run off the pool so they never hold a hashing thread
+        return passwordHashingExecutor.submit(() -> authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(id, password)))
+                .<ResponseEntity<?>>thenApplyAsync(authentication -> loginResponse(id, authentication), passwordHashingExecutor.continuations())
+                .exceptionally(this::loginFailure);
+    }
 
-            // Generate JWT token
-            String jwt = jwtTokenProvider.createToken(authentication);
+    @Operation(summary = "Refresh access token", description = "Exchange a refresh token for a new access token and a rotated refresh token")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Tokens refreshed successfully", 
+                    content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "401", description = "Invalid, expired, revoked or reused refresh token", 
+                    content = @Content)
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(
+            @Parameter(description = "The refresh token", required = true)
+            @RequestBody Map<String, String> refreshRequest) {
+        RefreshTokenService.TokenPair tokens = refreshTokenService.refresh(refreshRequest.get("refreshToken"));
+        if (tokens == null) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "Invalid or revoked refresh token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
 
-            // Get user with medical info for the response
-            User user = userService.getUserByIdWithMedicalInfo(id);
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Token refreshed successfully");
+        response.put("token", tokens.accessToken());
+        response.put("refreshToken", tokens.refreshToken());
 
-            // Create response with token and user info
-            Map<String, Object> response = new HashMap<>();
-            response.put("message", "User logged in successfully");
-            response.put("token", jwt);
-            response.put("user", user);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.accessToken());
 
-            // Set token in Authorization header
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + jwt);
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(response);
+    }
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(response);
-        } catch (AuthenticationException e) {
-            Map<String, String> response = new HashMap<>();
+    @Operation(summary = "Log out", description = "Revoke a refresh token and every token rotated from the same login")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Logged out successfully", 
+                    content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(
+            @Parameter(description = "The refresh token", required = true)
+            @RequestBody Map<String, String> logoutRequest) {
+        refreshTokenService.revoke(logoutRequest.get("refreshToken"));
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Logged out successfully");
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<?> loginResponse(String id, Authentication authentication) {
+        // Get user with medical info for the response, the token only carries its name and profile version
+        User user = userService.getUserByIdWithMedicalInfo(id);
+
+        // Generate JWT token
+        String jwt = jwtTokenProvider.createToken(authentication, user);
+
+        // Create response with token and user info
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "User logged in successfully");
+        response.put("token", jwt);
+        response.put("refreshToken", refreshTokenService.issue(authentication));
+        response.put("user", user);
+
+        // Set token in Authorization header
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + jwt);
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(response);
+    }
+
+    private ResponseEntity<?> loginFailure(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        Map<String, String> response = new HashMap<>();
+
+        if (cause instanceof AuthenticationException) {
             response.put("error", "Invalid ID/email or password");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
         }
+        if (cause instanceof RejectedExecutionException) {
+            response.put("error", "Too many login attempts, please retry shortly");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(loginRetryAfterSeconds))
+                    .body(response);
+        }
+        throw cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.model.RefreshTokenFamily;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface RefreshTokenFamilyMapper {
+
+    void insert(RefreshTokenFamily family);
+
+    int rotate(String familyId, String tokenId, String newTokenId, LocalDateTime updatedAt);
+
+    void revoke(String familyId, LocalDateTime updatedAt);
+
+    int deleteExpired(LocalDateTime now);
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Refresh token family, the chain of refresh tokens rotated from a single login
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshTokenFamily {
+    private String familyId;
+    private String userId;
+    private String currentTokenId; // jti of the only refresh token of the family that is still valid
+    private LocalDateTime expiresAt;
+    private Boolean revoked;
+    private LocalDateTime updatedAt;
+}
\ No newline at end of file
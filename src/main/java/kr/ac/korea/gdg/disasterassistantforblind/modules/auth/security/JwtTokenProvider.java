@@ -1,42 +1,104 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
+
     @Value("${jwt.secret:defaultSecretKeyForDevelopmentEnvironmentOnly}")
     private String secretKey;
 
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private long tokenValidityInMilliseconds;
 
+    @Value("${jwt.profile-claims.enabled:true}")
+    private boolean profileClaimsEnabled;
+
+    @Value("${jwt.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
     private Key key;
 
+    // Immutable and thread-safe, built once instead of per request
+    private JwtParser parser;
+
+    // Already verified tokens keyed by token digest, each entry expires with its token
+    private Cache<String, VerifiedToken> verifiedTokens;
+
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+
+        if (cacheEnabled) {
+            this.verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfter(new Expiry<String, VerifiedToken>() {
+                        @Override
+                        public long expireAfterCreate(String digest, VerifiedToken token, long currentTime) {
+                            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, token.expiresAt() - System.currentTimeMillis()));
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                            return expireAfterCreate(digest, token, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(String digest, VerifiedToken token, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .build();
+        }
     }
 
     public String createToken(Authentication authentication) {
+        return createToken(authentication, null);
+    }
+
+    /**
+     * Create a token, carrying the name and profile version of the user when profile claims are enabled.
+     * Medical information is never put in the token, which is signed but not encrypted.
+     *
+     * @param authentication The authentication
+     * @param user The user with its profile version, may be null
+     * @return The JWT
+     */
+    public String createToken(Authentication authentication, User user) {
         String authorities = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(","));
@@ -44,39 +106,132 @@ public class JwtTokenProvider {
         long now = (new Date()).getTime();
         Date validity = new Date(now + this.tokenValidityInMilliseconds);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(authentication.getName())
-                .claim("auth", authorities)
+                .claim("auth", authorities);
+
+        if (profileClaimsEnabled && user != null) {
+            builder.claim("name", user.getName())
+                    .claim("pv", user.getProfileVersion() != null ? user.getProfileVersion() : 0L);
+        }
+
+        return builder
                 .signWith(key, SignatureAlgorithm.HS512)
                 .setExpiration(validity)
                 .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Create a refresh token, which only the refresh endpoint accepts
+     *
+     * @param userId The user ID
+     * @param authorities The comma separated authorities
+     * @param familyId The refresh token family
+     * @param tokenId The token ID (jti)
+     * @param expiresAt The expiration of the token
+     * @return The JWT
+     */
+    public String createRefreshToken(String userId, String authorities, String familyId, String tokenId, Date expiresAt) {
+        return Jwts.builder()
+                .setSubject(userId)
+                .setId(tokenId)
+                .claim("typ", REFRESH_TOKEN_TYPE)
+                .claim("fam", familyId)
+                .claim("auth", authorities)
+                .signWith(key, SignatureAlgorithm.HS512)
+                .setExpiration(expiresAt)
+                .compact();
+    }
 
-        Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get("auth").toString().split(","))
-                        .filter(auth -> !auth.trim().isEmpty())
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
+    /**
+     * Verify a refresh token
+     *
+     * @param token The JWT
+     * @return The claims, or null if the token is invalid, expired or not a refresh token
+     */
+    public Claims parseRefreshToken(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            return REFRESH_TOKEN_TYPE.equals(claims.get("typ")) ? claims : null;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.info("Invalid refresh token: {}", e.getMessage());
+            return null;
+        }
+    }
 
-        UserDetails principal = new User(claims.getSubject(), "", authorities);
+    /**
+     * Verify a token and build its authentication, parsing and checking the signature only once.
+     * Only the verified claims are cached, every call gets its own authentication and principal.
+     *
+     * @param token The JWT
+     * @return The authentication, or null if the token is invalid or expired
+     */
+    public Authentication authenticate(String token) {
+        if (verifiedTokens == null) {
+            VerifiedToken verified = verify(token);
+            return verified != null ? verified.toAuthentication(token) : null;
+        }
+
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            return cached.toAuthentication(token);
+        }
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        VerifiedToken verified = verify(token);
+        if (verified != null) {
+            verifiedTokens.put(digest, verified);
+            return verified.toAuthentication(token);
+        }
+        return null;
     }
 
-    public boolean validateToken(String token) {
+    private VerifiedToken verify(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (REFRESH_TOKEN_TYPE.equals(claims.get("typ"))) {
+                log.info("Refresh token used as access token for '{}'", claims.getSubject());
+                return null;
+            }
+
+            Object auth = claims.get("auth");
+            List<GrantedAuthority> authorities =
+                    Arrays.stream((auth != null ? auth.toString() : "").split(","))
+                            .filter(authority -> !authority.trim().isEmpty())
+                            .map(SimpleGrantedAuthority::new)
+                            .collect(Collectors.toUnmodifiableList());
+
+            long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            return new VerifiedToken(claims.getSubject(), authorities,
+                    claims.get("name", String.class), toLong(claims.get("pv")), expiresAt);
         } catch (JwtException | IllegalArgumentException e) {
             log.info("Invalid JWT token: {}", e.getMessage());
-            return false;
+            return null;
+        }
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Claims of a verified token, immutable so that one entry can be shared by concurrent requests
+     */
+    private record VerifiedToken(String subject, List<GrantedAuthority> authorities, String name, Long profileVersion,
+                                 long expiresAt) {
+
+        private Authentication toAuthentication(String token) {
+            UserDetails principal = new JwtUserPrincipal(subject, authorities, name, profileVersion);
+            return new UsernamePasswordAuthenticationToken(principal, token, authorities);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal built from a verified JWT.
+ * Tokens issued with profile claims also carry the user's name, which is only trusted while
+ * {@link #getProfileVersion()} matches the user's current profile version.
+ */
+@Getter
+public class JwtUserPrincipal extends User {
+
+    private final String displayName;
+    private final Long profileVersion;
+
+    public JwtUserPrincipal(String username, Collection<? extends GrantedAuthority> authorities, String displayName,
+                            Long profileVersion) {
+        super(username, "", authorities);
+        this.displayName = displayName;
+        this.profileVersion = profileVersion;
+    }
+
+    /**
+     * @return Whether the token carried profile claims
+     */
+    public boolean hasProfileClaims() {
+        return profileVersion != null;
+    }
+}
\ No newline at end of file
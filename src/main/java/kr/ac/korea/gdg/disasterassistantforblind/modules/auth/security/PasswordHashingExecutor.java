@@ -0,0 +1,110 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for password hashing and verification.
+ * BCrypt is CPU bound, so it runs on a small fixed pool of platform threads with a bounded queue instead of
+ * request threads; a login storm then queues here and is rejected when the queue is full.
+ * The work that follows a hashing task, such as database I/O, runs on {@link #continuations()} so that it never
+ * holds one of the hashing threads.
+ */
+@Component
+@Slf4j
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService continuationExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${auth.hashing.pool-size:0}") int poolSize,
+            @Value("${auth.hashing.queue-capacity:200}") int queueCapacity) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("auth.hashing.wait")
+                .description("Time password hashing tasks spend queued")
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("auth.hashing.execution")
+                .description("Time password hashing tasks spend running")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.hashing.rejected")
+                .description("Password hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("auth.hashing.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Password hashing tasks waiting for a thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks currently running")
+                .register(meterRegistry);
+
+        log.info("Initialized password hashing pool with {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    /**
+     * Run a password hashing task on the pool
+     *
+     * @param task The task
+     * @return A CompletableFuture completed with the task result, or exceptionally with
+     *         {@link RejectedExecutionException} if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long startedAt = System.nanoTime();
+                waitTimer.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return task.get();
+                } finally {
+                    executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return Executor for the work chained after a hashing task, one virtual thread per task
+     */
+    public Executor continuations() {
+        return continuationExecutor;
+    }
+
+    /**
+     * Clean up resources when the service is destroyed
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        continuationExecutor.shutdown();
+        log.info("Shut down password hashing pool");
+    }
+}
\ No newline at end of file
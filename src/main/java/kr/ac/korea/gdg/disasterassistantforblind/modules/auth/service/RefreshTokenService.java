@@ -0,0 +1,146 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.auth.service;
+
+import io.jsonwebtoken.Claims;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.mapper.RefreshTokenFamilyMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.model.RefreshTokenFamily;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security.JwtTokenProvider;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.ProfileVersionRegistry;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Rotating refresh tokens, so clients renew access tokens with an HMAC check instead of a BCrypt login.
+ * Each login starts a token family; refreshing rotates the family to a new token, and presenting an
+ * already rotated token revokes the whole family.
+ */
+@Service
+@Slf4j
+public class RefreshTokenService {
+
+    @Value("${jwt.refresh.expiration:2592000000}") // 30 days in milliseconds
+    private long refreshTokenValidityInMilliseconds;
+
+    private final RefreshTokenFamilyMapper refreshTokenFamilyMapper;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final UserService userService;
+    private final ProfileVersionRegistry profileVersionRegistry;
+
+    public RefreshTokenService(
+            RefreshTokenFamilyMapper refreshTokenFamilyMapper,
+            JwtTokenProvider jwtTokenProvider,
+            UserService userService,
+            ProfileVersionRegistry profileVersionRegistry) {
+        this.refreshTokenFamilyMapper = refreshTokenFamilyMapper;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.userService = userService;
+        this.profileVersionRegistry = profileVersionRegistry;
+    }
+
+    /**
+     * Start a new refresh token family for a successful login
+     *
+     * @param authentication The authentication of the login
+     * @return The refresh token
+     */
+    public String issue(Authentication authentication) {
+        String familyId = UUID.randomUUID().toString();
+        String tokenId = UUID.randomUUID().toString();
+        Date expiresAt = new Date(System.currentTimeMillis() + refreshTokenValidityInMilliseconds);
+
+        refreshTokenFamilyMapper.insert(RefreshTokenFamily.builder()
+                .familyId(familyId)
+                .userId(authentication.getName())
+                .currentTokenId(tokenId)
+                .expiresAt(LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()))
+                .updatedAt(LocalDateTime.now())
+                .build());
+
+        String authorities = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(","));
+        return jwtTokenProvider.createRefreshToken(authentication.getName(), authorities, familyId, tokenId, expiresAt);
+    }
+
+    /**
+     * Rotate a refresh token and issue a new access token
+     *
+     * @param refreshToken The refresh token
+     * @return The new access and refresh tokens, or null if the refresh token is invalid, revoked or reused
+     */
+    public TokenPair refresh(String refreshToken) {
+        Claims claims = refreshToken != null ? jwtTokenProvider.parseRefreshToken(refreshToken) : null;
+        if (claims == null) {
+            return null;
+        }
+
+        String userId = claims.getSubject();
+        String familyId = claims.get("fam", String.class);
+        String newTokenId = UUID.randomUUID().toString();
+
+        if (refreshTokenFamilyMapper.rotate(familyId, claims.getId(), newTokenId, LocalDateTime.now()) == 0) {
+            // Revoked family, or a token that was already rotated is presented again
+            refreshTokenFamilyMapper.revoke(familyId, LocalDateTime.now());
+            log.warn("Refresh token reuse or revoked family {} for user {}, family revoked", familyId, userId);
+            return null;
+        }
+
+        User user = userService.getUserById(userId);
+        if (user == null || !Boolean.TRUE.equals(user.getEnabled())) {
+            refreshTokenFamilyMapper.revoke(familyId, LocalDateTime.now());
+            return null;
+        }
+        user.setProfileVersion(profileVersionRegistry.getVersion(userId));
+
+        String authorities = claims.get("auth", String.class);
+        List<GrantedAuthority> grantedAuthorities = Arrays.stream((authorities != null ? authorities : "").split(","))
+                .filter(auth -> !auth.trim().isEmpty())
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+        Authentication authentication = new UsernamePasswordAuthenticationToken(userId, null, grantedAuthorities);
+
+        // The rotated token keeps the family's expiration, a login is needed once it passes
+        return new TokenPair(
+                jwtTokenProvider.createToken(authentication, user),
+                jwtTokenProvider.createRefreshToken(userId, authorities, familyId, newTokenId, claims.getExpiration()));
+    }
+
+    /**
+     * Revoke the family of a refresh token
+     *
+     * @param refreshToken The refresh token
+     */
+    public void revoke(String refreshToken) {
+        Claims claims = refreshToken != null ? jwtTokenProvider.parseRefreshToken(refreshToken) : null;
+        if (claims != null) {
+            refreshTokenFamilyMapper.revoke(claims.get("fam", String.class), LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Delete expired refresh token families
+     */
+    @Scheduled(cron = "${jwt.refresh.cleanup-cron:0 0 4 * * *}")
+    public void deleteExpiredFamilies() {
+        int deleted = refreshTokenFamilyMapper.deleteExpired(LocalDateTime.now());
+        log.info("Deleted {} expired refresh token families", deleted);
+    }
+
+    public record TokenPair(String accessToken, String refreshToken) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,26 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Channel that propagates cache invalidations between application nodes.
+ * Implementations deliver every published key to the subscribers of the cache on all nodes, including the publisher.
+ */
+public interface CacheInvalidationChannel {
+
+    /**
+     * Publish the invalidation of a cache entry
+     *
+     * @param cacheName The cache name
+     * @param key The invalidated key
+     */
+    void publish(String cacheName, String key);
+
+    /**
+     * Subscribe to the invalidations of a cache
+     *
+     * @param cacheName The cache name
+     * @param listener Called with each invalidated key
+     */
+    void subscribe(String cacheName, Consumer<String> listener);
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.mapper.CacheInvalidationMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.model.CacheInvalidation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation channel shared by every node through the cache_invalidations table.
+ * Invalidations are applied locally right away and recorded in the table; every node polls the table every
+ * {@code cache.invalidation.poll-interval} and applies the invalidations recorded by the other nodes, so an entry
+ * changed on one node is stale on the others for about one poll interval instead of up to its cache TTL.
+ * Polls re-read an overlap window measured by the database clock and rows are kept for
+ * {@code cache.invalidation.retention}, so a node that could not poll for less than that catches up.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.mode", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class JdbcCacheInvalidationChannel implements CacheInvalidationChannel {
+
+    private final CacheInvalidationMapper cacheInvalidationMapper;
+    private final TransactionTemplate publishTransaction;
+    // Identifies this process's rows, so a node does not apply its own invalidations twice
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Duration overlap;
+    private final Duration retention;
+    private final LocalCacheInvalidationChannel local = new LocalCacheInvalidationChannel();
+
+    // Database time the last successful poll started at, null until the first poll
+    private LocalDateTime polledAt;
+    // Rows applied by the last poll, skipped when the overlap window reads them again
+    private Set<Long> appliedIds = Set.of();
+
+    public JdbcCacheInvalidationChannel(
+            CacheInvalidationMapper cacheInvalidationMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${cache.invalidation.overlap:5s}") Duration overlap,
+            @Value("${cache.invalidation.retention:10m}") Duration retention) {
+        this.cacheInvalidationMapper = cacheInvalidationMapper;
+        // Invalidations are published after the writing transaction commits, while its connection is still bound
+        // and would never commit the insert
+        this.publishTransaction = new TransactionTemplate(transactionManager);
+        this.publishTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.overlap = overlap;
+        this.retention = retention;
+    }
+
+    @Override
+    public void publish(String cacheName, String key) {
+        local.publish(cacheName, key);
+        try {
+            publishTransaction.executeWithoutResult(status -> cacheInvalidationMapper.insert(cacheName, key, nodeId));
+        } catch (Exception e) {
+            // The other nodes keep the entry until its TTL expires
+            log.error("Error publishing invalidation of {} in cache {}", key, cacheName, e);
+        }
+    }
+
+    @Override
+    public void subscribe(String cacheName, Consumer<String> listener) {
+        local.subscribe(cacheName, listener);
+    }
+
+    /**
+     * Apply the invalidations recorded by the other nodes since the last poll
+     */
+    @Scheduled(fixedDelayString = "${cache.invalidation.poll-interval:1000}")
+    public synchronized void poll() {
+        try {
+            LocalDateTime now = cacheInvalidationMapper.findNow();
+            if (polledAt == null) {
+                // Caches start empty, only what is invalidated from now on matters
+                polledAt = now;
+                return;
+            }
+
+            List<CacheInvalidation> invalidations = cacheInvalidationMapper.findCreatedSince(polledAt.minus(overlap));
+            Set<Long> ids = new HashSet<>();
+            int applied = 0;
+            for (CacheInvalidation invalidation : invalidations) {
+                ids.add(invalidation.getId());
+                if (!appliedIds.contains(invalidation.getId()) && !nodeId.equals(invalidation.getNodeId())) {
+                    local.publish(invalidation.getCacheName(), invalidation.getCacheKey());
+                    applied++;
+                }
+            }
+            appliedIds = ids;
+            polledAt = now;
+            if (applied > 0) {
+                log.debug("Applied {} cache invalidations from other nodes", applied);
+            }
+        } catch (Exception e) {
+            log.error("Error polling cache invalidations", e);
+        }
+    }
+
+    /**
+     * Delete the invalidations older than the retention period
+     */
+    @Scheduled(cron = "${cache.invalidation.cleanup-cron:0 */10 * * * *}")
+    public void deleteExpired() {
+        try {
+            int deleted = cacheInvalidationMapper.deleteOlderThan(retention.toMillis());
+            log.debug("Deleted {} cache invalidations", deleted);
+        } catch (Exception e) {
+            log.warn("Error deleting cache invalidations", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process invalidation channel for single-node deployments, enabled with {@code cache.invalidation.mode=local}.
+ * Use {@link JdbcCacheInvalidationChannel} when several nodes share the database.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.mode", havingValue = "local")
+public class LocalCacheInvalidationChannel implements CacheInvalidationChannel {
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String cacheName, String key) {
+        listeners.getOrDefault(cacheName, List.of()).forEach(listener -> listener.accept(key));
+    }
+
+    @Override
+    public void subscribe(String cacheName, Consumer<String> listener) {
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded read-through cache in front of a mapper lookup.
+ * Entries are evicted by size and TTL, absent rows are not cached, and callers always receive a copy
+ * so that mutating a returned entity never changes the cached one.
+ * Invalidations are applied after the surrounding transaction commits and are published on the
+ * {@link CacheInvalidationChannel}; hit, miss and eviction metrics are registered as {@code cache.*} meters.
+ *
+ * @param <V> The cached entity type
+ */
+public class ReadThroughCache<V> {
+
+    private final String name;
+    private final Cache<String, V> cache;
+    private final UnaryOperator<V> copier;
+    private final CacheInvalidationChannel invalidationChannel;
+
+    public ReadThroughCache(String name, long maxSize, Duration ttl, UnaryOperator<V> copier,
+                            MeterRegistry meterRegistry, CacheInvalidationChannel invalidationChannel) {
+        this.name = name;
+        this.copier = copier;
+        this.invalidationChannel = invalidationChannel;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        invalidationChannel.subscribe(name, cache::invalidate);
+    }
+
+    /**
+     * Get an entry, loading it on a miss
+     *
+     * @param key The key
+     * @param loader Loads the entry, may return null
+     * @return A copy of the entry, or null if it does not exist
+     */
+    public V get(String key, Function<String, V> loader) {
+        V value = cache.get(key, loader);
+        return value != null ? copier.apply(value) : null;
+    }
+
+    /**
+     * Invalidate an entry on every node, after the current transaction commits if one is active
+     *
+     * @param key The key
+     */
+    public void invalidate(String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(key);
+                }
+            });
+        } else {
+            invalidateNow(key);
+        }
+    }
+
+    private void invalidateNow(String key) {
+        cache.invalidate(key);
+        invalidationChannel.publish(name, key);
+    }
+}
\ No newline at end of file
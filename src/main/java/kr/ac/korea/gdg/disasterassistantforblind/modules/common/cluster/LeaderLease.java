@@ -0,0 +1,149 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster;
+
+import jakarta.annotation.PreDestroy;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.mapper.SchedulerLeaseMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-wide leader lease stored in the scheduler_leases table.
+ * Every node tries to acquire or renew the lease every {@code cluster.lease.renew-interval}; the holder is the leader
+ * until the lease expires, measured by the database clock. A node considers itself leader only until
+ * {@code cluster.lease.ttl} after its last successful renewal started, so it steps down before anyone can take over.
+ * Renewal runs on its own thread, so a slow scheduled task such as an earthquake poll cannot delay it past the ttl.
+ */
+@Component
+@Slf4j
+public class LeaderLease {
+
+    private final SchedulerLeaseMapper schedulerLeaseMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String name;
+    private final String nodeId;
+    private final Duration ttl;
+    private final Duration renewInterval;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("leader-lease").daemon().factory());
+
+    private volatile long heldUntilNanos;
+    private volatile boolean leader;
+    private boolean initialized;
+
+    public LeaderLease(
+            SchedulerLeaseMapper schedulerLeaseMapper,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${cluster.lease.name:scheduler-leader}") String name,
+            @Value("${cluster.node-id:}") String nodeId,
+            @Value("${cluster.lease.ttl:30s}") Duration ttl,
+            @Value("${cluster.lease.renew-interval:10000}") Duration renewInterval) {
+        this.schedulerLeaseMapper = schedulerLeaseMapper;
+        this.eventPublisher = eventPublisher;
+        this.name = name;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : defaultNodeId();
+        this.ttl = ttl;
+        this.renewInterval = renewInterval;
+        this.heldUntilNanos = System.nanoTime();
+        log.info("Cluster node {} competing for lease {} with ttl {}", this.nodeId, name, ttl);
+    }
+
+    /**
+     * Start renewing the lease once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        renewer.scheduleWithFixedDelay(() -> {
+            try {
+                renew();
+            } catch (Exception e) {
+                // A failed run would cancel every later renewal
+                log.error("Error renewing lease {}", name, e);
+            }
+        }, 0, renewInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acquire or renew the lease
+     */
+    public void renew() {
+        long startedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            if (!initialized) {
+                schedulerLeaseMapper.insertIfAbsent(name);
+                initialized = true;
+            }
+            acquired = schedulerLeaseMapper.tryAcquire(name, nodeId, ttl.toMillis()) > 0;
+        } catch (Exception e) {
+            log.error("Error renewing lease {}", name, e);
+            acquired = false;
+        }
+
+        if (acquired) {
+            heldUntilNanos = startedAt + ttl.toNanos();
+        }
+        updateLeadership(isLeader());
+    }
+
+    /**
+     * @return true while this node holds the lease
+     */
+    public boolean isLeader() {
+        return System.nanoTime() - heldUntilNanos < 0;
+    }
+
+    /**
+     * @return The ID this node uses as lease and job owner
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Give the lease up on shutdown so another node can take over without waiting for it to expire
+     */
+    @PreDestroy
+    public void release() {
+        renewer.shutdownNow();
+        if (leader) {
+            try {
+                schedulerLeaseMapper.release(name, nodeId);
+                log.info("Released lease {}", name);
+            } catch (Exception e) {
+                log.warn("Error releasing lease {}", name, e);
+            }
+        }
+        heldUntilNanos = System.nanoTime();
+        updateLeadership(false);
+    }
+
+    private synchronized void updateLeadership(boolean nowLeader) {
+        if (nowLeader == leader) {
+            return;
+        }
+        leader = nowLeader;
+        log.info("Node {} {} lease {}", nodeId, nowLeader ? "acquired" : "lost", name);
+        eventPublisher.publishEvent(new LeadershipChangedEvent(name, nowLeader));
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
\ No newline at end of file
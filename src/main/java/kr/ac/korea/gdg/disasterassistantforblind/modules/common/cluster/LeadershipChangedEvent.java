@@ -0,0 +1,10 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster;
+
+/**
+ * Published when this node acquires or loses a cluster lease
+ *
+ * @param lease The lease name
+ * @param leader Whether this node now holds the lease
+ */
+public record LeadershipChangedEvent(String lease, boolean leader) {
+}
\ No newline at end of file
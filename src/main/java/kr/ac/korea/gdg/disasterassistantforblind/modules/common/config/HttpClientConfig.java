@@ -0,0 +1,59 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Dedicated HTTP clients per upstream service.
+ * Each client keeps its own pool of keep-alive connections and its own timeouts,
+ * so a slow AI server cannot hold up the USGS poller and vice versa.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * HTTP client for the USGS earthquake feed (HTTPS, negotiates HTTP/2)
+     */
+    @Bean
+    public HttpClient usgsHttpClient(
+            @Value("${http.usgs.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${http.usgs.version:HTTP_2}") HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * HTTP client for the AI server
+     */
+    @Bean
+    public HttpClient aiHttpClient(
+            @Value("${http.ai.connect-timeout:3s}") Duration connectTimeout,
+            @Value("${http.ai.version:HTTP_1_1}") HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * RestTemplate for the USGS earthquake feed
+     */
+    @Bean
+    public RestTemplate usgsRestTemplate(
+            @Qualifier("usgsHttpClient") HttpClient usgsHttpClient,
+            @Value("${http.usgs.read-timeout:30s}") Duration readTimeout) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(usgsHttpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return new RestTemplate(requestFactory);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,19 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.model.CacheInvalidation;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface CacheInvalidationMapper {
+
+    void insert(String cacheName, String cacheKey, String nodeId);
+
+    LocalDateTime findNow();
+
+    List<CacheInvalidation> findCreatedSince(LocalDateTime since);
+
+    int deleteOlderThan(long retentionMillis);
+}
\ No newline at end of file
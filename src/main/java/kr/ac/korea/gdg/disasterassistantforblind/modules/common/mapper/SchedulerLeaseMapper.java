@@ -0,0 +1,13 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface SchedulerLeaseMapper {
+
+    void insertIfAbsent(String name);
+
+    int tryAcquire(String name, String owner, long ttlMillis);
+
+    void release(String name, String owner);
+}
\ No newline at end of file
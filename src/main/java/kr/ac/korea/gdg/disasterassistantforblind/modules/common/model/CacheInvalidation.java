@@ -0,0 +1,24 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cache invalidation entity, one invalidated key published by a node for the other nodes
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheInvalidation {
+
+    private Long id;
+    private String cacheName;
+    private String cacheKey;
+    private String nodeId;
+    private LocalDateTime createdAt;
+}
\ No newline at end of file
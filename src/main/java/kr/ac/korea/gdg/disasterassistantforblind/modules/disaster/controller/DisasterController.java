@@ -1,28 +1,42 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
+import jakarta.servlet.http.HttpServletRequest;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.AiService;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.PromptAdmissionControl;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.PromptUploadRelay;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.UserLocationIndex;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service.MedicalInfoService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service.NotificationService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.dto.LocationRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/disaster")
@@ -33,88 +47,174 @@ public class DisasterController {
     private final AiService aiService;
     private final UserService userService;
     private final MedicalInfoService medicalInfoService;
+    private final UserLocationIndex userLocationIndex;
+    private final PromptUploadRelay promptUploadRelay;
+    private final PromptAdmissionControl promptAdmissionControl;
+    private final Duration uploadTimeout;
+    private final Duration responseTimeout;
 
     public DisasterController(
             AiService aiService,
             UserService userService,
-            MedicalInfoService medicalInfoService) {
+            MedicalInfoService medicalInfoService,
+            UserLocationIndex userLocationIndex,
+            PromptUploadRelay promptUploadRelay,
+            PromptAdmissionControl promptAdmissionControl,
+            @Value("${prompt.upload.timeout:30s}") Duration uploadTimeout,
+            @Value("${prompt.response-timeout:30s}") Duration responseTimeout) {
         this.aiService = aiService;
         this.userService = userService;
         this.medicalInfoService = medicalInfoService;
+        this.userLocationIndex = userLocationIndex;
+        this.promptUploadRelay = promptUploadRelay;
+        this.promptAdmissionControl = promptAdmissionControl;
+        this.uploadTimeout = uploadTimeout;
+        this.responseTimeout = responseTimeout;
     }
 
     /**
      * Endpoint for clients to send their location, image data, and voice prompt during an disaster
-     * Uses multipart/form-data for file uploads with location data in JSON
+     * Uses multipart/form-data for file uploads with location data in JSON.
+     * The upload is not buffered: its media parts are streamed to the AI server while they arrive, and the request
+     * thread is held until the AI call has read them. The location is recorded and the guidance returned even if the
+     * AI call fails or does not start in time, with fallback guidance.
      */
     @Operation(summary = "Send location and media", 
               description = "Send location, image data, and voice prompt during an disaster. " +
-                           "Uses multipart/form-data for file uploads with location data in JSON.")
+                           "Uses multipart/form-data with a JSON \"location\" part (latitude, longitude, timestamp) " +
+                           "and optional \"image\" (JPEG) and \"voice\" (WebM) file parts. " +
+                           "A client retrying a prompt should resend it with the same Idempotency-Key header: " +
+                           "while the first request is in flight the retry gets its guidance instead of starting another one.")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Location and media processed successfully", 
                     content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "400", description = "Missing or invalid location part", 
+                    content = @Content),
         @ApiResponse(responseCode = "401", description = "Not authenticated", 
                     content = @Content),
+        @ApiResponse(responseCode = "413", description = "Image or voice file too large", 
+                    content = @Content),
+        @ApiResponse(responseCode = "429", description = "Too many requests from this user, retry after the Retry-After delay", 
+                    content = @Content),
         @ApiResponse(responseCode = "500", description = "Error processing location and media", 
+                    content = @Content),
+        @ApiResponse(responseCode = "503", description = "Assistant overloaded, retry after the Retry-After delay", 
                     content = @Content)
     })
     @PostMapping(value = "/prompt", consumes = {"multipart/form-data"})
     public DeferredResult<ResponseEntity<?>> updateLocationAndFiles(
             @Parameter(hidden = true) Authentication authentication,
-            @Parameter(description = "Location data (latitude, longitude, timestamp)", required = true) 
-            @RequestPart(value = "location", required = true) LocationRequest locationRequest,
-            @Parameter(description = "Image file (JPEG) of surroundings", required = false) 
-            @RequestPart(value = "image", required = false) MultipartFile image,
-            @Parameter(description = "Voice file (WebM) with user's message", required = false) 
-            @RequestPart(value = "voice", required = false) MultipartFile voice) {
+            @Parameter(description = "Client-generated key of the prompt, the same for every retry of it")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @Parameter(hidden = true) HttpServletRequest request) {
 
-        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(30000L); // 30 seconds timeout
+        DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(responseTimeout.toMillis());
 
         if (authentication == null) {
             deferredResult.setResult(ResponseEntity.status(401).body("Authentication required"));
             return deferredResult;
         }
+        if (!promptUploadRelay.isMultipart(request)) {
+            deferredResult.setResult(ResponseEntity.badRequest().body("multipart/form-data request required"));
+            return deferredResult;
+        }
 
         try {
-            // Get the authenticated user
-            User user = userService.getUserById(authentication.getName());
+            // Get the authenticated user, from the token's profile claims when they are current
+            User user = userService.getAuthenticatedUser(authentication);
             String userId = user.getId();
 
-            // Extract location data from the JSON request
-            Double latitude = locationRequest.getLatitude();
-            Double longitude = locationRequest.getLongitude();
+            // Shed load before the upload is read or an AI call is queued
+            PromptAdmissionControl.Decision decision = promptAdmissionControl.admit(userId, idempotencyKey);
+            if (decision instanceof PromptAdmissionControl.Rejected rejected) {
+                deferredResult.setResult(ResponseEntity.status(rejected.status())
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.retryAfterSeconds()))
+                        .body(rejected.message()));
+                return deferredResult;
+            }
+            if (decision instanceof PromptAdmissionControl.Coalesced coalesced) {
+                // A retry of the prompt in flight, with the same Idempotency-Key: only its location is read
+                log.info("Joining /prompt request in flight for user {}", userId);
+                deferredResult.onTimeout(coalesced::leave);
+                deferredResult.onError(error -> coalesced.leave());
+                LocationRequest locationRequest;
+                try {
+                    PromptUploadRelay.Upload duplicate = promptUploadRelay.open(request);
+                    duplicate.drain();
+                    locationRequest = duplicate.consumed().join();
+                } catch (IOException | CompletionException e) {
+                    coalesced.leave();
+                    deferredResult.setResult(uploadFailure(e instanceof CompletionException ? e.getCause() : e));
+                    return deferredResult;
+                }
+                recordLocation(userId, locationRequest);
+                completeWithGuidance(deferredResult, coalesced.guidance(),
+                        locationRequest.getLatitude(), locationRequest.getLongitude());
+                return deferredResult;
+            }
+            PromptAdmissionControl.Admitted admitted = (PromptAdmissionControl.Admitted) decision;
 
-            // Get or create medical info for the user
-            MedicalInfo medicalInfo = medicalInfoService.getMedicalInfoByUserId(userId);
-            if (medicalInfo == null) {
-                medicalInfo = new MedicalInfo();
-                medicalInfo.setUserId(userId);
+            // Process the location, image data, and voice prompt with Ai API asynchronously,
+            // the upload is read while it is relayed to the AI server
+            PromptUploadRelay.Upload upload;
+            CompletableFuture<String> guidanceFuture;
+            try {
+                upload = promptUploadRelay.open(request);
+                guidanceFuture = aiService.processPromptUploadAsync(user, upload, responseTimeout);
+            } catch (Exception e) {
+                admitted.track(CompletableFuture.failedFuture(e));
+                throw e;
             }
+            admitted.track(guidanceFuture);
 
-            // Log the timestamp received from the client
-            log.info("Received location update with timestamp: {}", locationRequest.getTimestamp());
-
-            // Process the location, image data, and voice prompt with Ai API asynchronously
-            // Pass the MultipartFile objects directly to the service
-            aiService.processUserLocationImageAndVoiceAsync(user, latitude, longitude, image, voice)
-                .thenAccept(guidance -> {
-                    // Return the guidance directly in the HTTP response instead of sending a separate notification
-                    Map<String, Object> response = new HashMap<>();
-                    response.put("status", "success");
-                    response.put("message", "Location, image data, and voice prompt processed");
-                    response.put("guidance", guidance);
-                    response.put("latitude", latitude);
-                    response.put("longitude", longitude);
-
-                    deferredResult.setResult(ResponseEntity.ok(response));
-                })
-                .exceptionally(ex -> {
-                    log.error("Error processing location, image data, and voice prompt", ex);
-                    deferredResult.setResult(ResponseEntity.status(500)
-                        .body("Error processing location, image data, and voice prompt"));
-                    return null;
-                });
+            // Nobody reads the guidance once the response timed out or the client went away, unless a duplicate
+            // request joined this one: the queued task or its AI call is cancelled when the last of them leaves
+            deferredResult.onTimeout(() -> {
+                log.warn("/prompt response timed out for user {}, leaving its AI call", userId);
+                admitted.leave();
+            });
+            deferredResult.onError(error -> {
+                log.warn("/prompt request of user {} failed, leaving its AI call: {}", userId, error.toString());
+                admitted.leave();
+            });
 
+            // The request body can only be read while this request is active, so the request thread waits for the AI
+            // call to relay it
+            try {
+                CompletableFuture.anyOf(upload.consumed(), guidanceFuture).get(uploadTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                // Reading the upload failed, reported below
+            } catch (TimeoutException e) {
+                if (upload.relayOpened().isDone()) {
+                    // The client sends its upload too slowly
+                    upload.abort();
+                    guidanceFuture.cancel(true);
+                    log.warn("Timed out relaying /prompt upload for user {}", userId);
+                    deferredResult.setResult(ResponseEntity.status(HttpStatus.REQUEST_TIMEOUT).body("Upload timed out"));
+                    return deferredResult;
+                }
+                // The AI call is still queued and could not read the upload once this request returns
+                log.warn("/prompt AI call of user {} did not start within {}, answering with fallback guidance",
+                        userId, uploadTimeout);
+                guidanceFuture.cancel(true);
+                guidanceFuture = CompletableFuture.completedFuture(AiService.PROMPT_FALLBACK_GUIDANCE);
+            }
+            if (!upload.consumed().isDone()) {
+                // The AI call ended without reading the whole upload, or never started: read the rest for the location
+                upload.drain();
+            }
+
+            LocationRequest locationRequest;
+            try {
+                locationRequest = upload.consumed().join();
+            } catch (CompletionException e) {
+                guidanceFuture.cancel(true);
+                deferredResult.setResult(uploadFailure(e.getCause()));
+                return deferredResult;
+            }
+
+            recordLocation(userId, locationRequest);
+            completeWithGuidance(deferredResult, guidanceFuture, locationRequest.getLatitude(), locationRequest.getLongitude());
             return deferredResult;
         } catch (Exception e) {
             log.error("Error processing location, image data, and voice prompt", e);
@@ -123,4 +223,81 @@ public class DisasterController {
             return deferredResult;
         }
     }
+
+    /**
+     * Remember the last known location of a user so earthquake alerts can target them
+     *
+     * @param userId The user ID
+     * @param locationRequest The location part of the upload
+     */
+    private void recordLocation(String userId, LocationRequest locationRequest) {
+        // Extract location data from the JSON part
+        Double latitude = locationRequest.getLatitude();
+        Double longitude = locationRequest.getLongitude();
+
+        // Log the timestamp received from the client
+        log.info("Received location update with timestamp: {}", locationRequest.getTimestamp());
+
+        if (latitude != null && longitude != null) {
+            medicalInfoService.updateLocation(userId, latitude, longitude);
+            userLocationIndex.update(userId, latitude, longitude);
+        }
+    }
+
+    /**
+     * Return the guidance directly in the HTTP response instead of sending a separate notification
+     *
+     * @param deferredResult The pending response
+     * @param guidanceFuture The guidance
+     * @param latitude The latitude of the upload
+     * @param longitude The longitude of the upload
+     */
+    private void completeWithGuidance(DeferredResult<ResponseEntity<?>> deferredResult,
+                                      CompletableFuture<String> guidanceFuture, Double latitude, Double longitude) {
+        guidanceFuture
+            .thenAccept(guidance -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("status", "success");
+                response.put("message", "Location, image data, and voice prompt processed");
+                response.put("guidance", guidance);
+                response.put("latitude", latitude);
+                response.put("longitude", longitude);
+                if (latitude != null && longitude != null) {
+                    // Topic broadcasting earthquake alerts for the user's area
+                    response.put("cellTopic", NotificationService.cellTopic(userLocationIndex.cellId(latitude, longitude)));
+                }
+
+                deferredResult.setResult(ResponseEntity.ok(response));
+            })
+            .exceptionally(ex -> {
+                if (ex instanceof CancellationException || ex.getCause() instanceof CancellationException) {
+                    // The request this one joined was cancelled, the client may send its prompt again
+                    deferredResult.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body("The request in progress was cancelled, please try again"));
+                    return null;
+                }
+                log.error("Error processing location, image data, and voice prompt", ex);
+                deferredResult.setResult(ResponseEntity.status(500)
+                    .body("Error processing location, image data, and voice prompt"));
+                return null;
+            });
+    }
+
+    /**
+     * Map a failure to read the upload to a response
+     *
+     * @param cause The failure
+     * @return The error response
+     */
+    private ResponseEntity<?> uploadFailure(Throwable cause) {
+        if (cause instanceof FileUploadSizeException) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(cause.getMessage());
+        }
+        if (cause instanceof IllegalArgumentException || cause instanceof JsonProcessingException) {
+            return ResponseEntity.badRequest().body(cause.getMessage());
+        }
+        log.error("Error reading /prompt upload", cause);
+        return ResponseEntity.status(500).body("Error processing location, image data, and voice prompt");
+    }
 }
\ No newline at end of file
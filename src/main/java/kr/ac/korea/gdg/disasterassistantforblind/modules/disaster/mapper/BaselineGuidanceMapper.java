@@ -0,0 +1,24 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.BaselineGuidance;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.BaselineGuidanceStats;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface BaselineGuidanceMapper {
+
+    int insertIfAbsent(BaselineGuidance baselineGuidance);
+
+    List<BaselineGuidance> findGenerated(List<String> cohortKeys);
+
+    List<BaselineGuidance> findDue(LocalDateTime staleBefore, LocalDateTime now, int limit);
+
+    int updateScript(String cohortKey, String script, LocalDateTime generatedAt);
+
+    int recordFailure(String cohortKey, LocalDateTime retryAfter);
+
+    BaselineGuidanceStats findStats(LocalDateTime staleBefore);
+}
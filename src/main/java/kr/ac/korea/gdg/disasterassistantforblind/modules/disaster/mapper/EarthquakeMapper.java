@@ -13,7 +13,11 @@ public interface EarthquakeMapper {
 
     List<Earthquake> findRecentEarthquakes(LocalDateTime since);
 
+    List<Earthquake> findLatestEarthquakes(LocalDateTime since, int limit);
+
     void insert(Earthquake earthquake);
 
+    void upsert(Earthquake earthquake);
+
     void updateActiveStatus(String id, Boolean active);
 }
\ No newline at end of file
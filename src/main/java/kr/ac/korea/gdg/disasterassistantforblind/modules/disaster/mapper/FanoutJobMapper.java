@@ -0,0 +1,27 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.FanoutJob;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface FanoutJobMapper {
+
+    void insertAll(List<FanoutJob> jobs);
+
+    int claimNext(String owner, String claimToken, long leaseMillis, int maxAttempts);
+
+    int failExpired(int maxAttempts);
+
+    FanoutJob findByClaimToken(String claimToken);
+
+    int extendLeases(List<String> claimTokens, long leaseMillis);
+
+    int complete(long id, String claimToken);
+
+    int fail(long id, String claimToken, int maxAttempts);
+
+    int deleteCompletedBefore(LocalDateTime before);
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface IngestCursorMapper {
+
+    Long findHighWaterMark(String name);
+
+    void upsert(String name, long highWaterMark, LocalDateTime updatedAt);
+}
\ No newline at end of file
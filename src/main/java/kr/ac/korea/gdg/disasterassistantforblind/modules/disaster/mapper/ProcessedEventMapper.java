@@ -0,0 +1,16 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.ProcessedEvent;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+
+@Mapper
+public interface ProcessedEventMapper {
+
+    ProcessedEvent findById(String eventId);
+
+    void upsert(ProcessedEvent processedEvent);
+
+    int deleteProcessedBefore(LocalDateTime before);
+}
\ No newline at end of file
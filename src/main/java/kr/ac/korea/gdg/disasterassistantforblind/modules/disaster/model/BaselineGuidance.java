@@ -0,0 +1,29 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Baseline guidance entity, the event-independent safety script of a guidance cohort
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BaselineGuidance {
+
+    // SHA-256 of the user_profile prompt
+    private String cohortKey;
+    private String userProfile;
+    // Null until the script has been generated
+    private String script;
+    private LocalDateTime requestedAt;
+    private LocalDateTime generatedAt;
+    // Consecutive failed generations, the cohort is not retried before retryAfter
+    private Integer failedAttempts;
+    private LocalDateTime retryAfter;
+}
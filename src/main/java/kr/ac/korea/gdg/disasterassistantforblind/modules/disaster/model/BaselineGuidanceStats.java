@@ -0,0 +1,18 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Counts and storage footprint of the baseline_guidance table
+ */
+@Data
+public class BaselineGuidanceStats {
+
+    private long total;
+    private long pending;
+    private long stale;
+    private long scriptBytes;
+    private LocalDateTime oldestGeneratedAt;
+}
@@ -24,6 +24,7 @@ public class Earthquake {
     private Double depth;
     private String location;
     private Boolean active;
+    private Long updated; // USGS "updated" timestamp in epoch millis
     private LocalDateTime createdAt;
     
     public boolean isActive() {
@@ -0,0 +1,34 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fan-out job entity, the personalized notifications of one earthquake event for one shard of its recipients
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FanoutJob {
+
+    private Long id;
+    private String eventId;
+    private Integer shard;
+    private Integer shardCount;
+    // The earthquake data as JSON
+    private String payload;
+    // PENDING, RUNNING, DONE or FAILED once its attempts are used up
+    private String status;
+    private String owner;
+    private String claimToken;
+    // Number of times the job was claimed
+    private Integer attempts;
+    private LocalDateTime leaseUntil;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
\ No newline at end of file
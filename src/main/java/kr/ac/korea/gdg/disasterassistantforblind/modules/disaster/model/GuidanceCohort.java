@@ -0,0 +1,101 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Group of users that receive the same AI guidance for an earthquake.
+ * Only the profile fields that influence guidance are kept, in normalized and coarsened form.
+ */
+public record GuidanceCohort(String ageBand, String bloodType, String allergies, String coarseLocation) {
+
+    /**
+     * Placeholder sent to the AI server instead of the user's name, replaced when personalising
+     */
+    public static final String NAME_PLACEHOLDER = "{{name}}";
+
+    /**
+     * Build the cohort of a user from their medical information
+     *
+     * @param medicalInfo The medical information, may be null
+     * @param ageBandYears Width of an age band in years
+     * @param locationGridDegrees Size of a location grid cell in degrees
+     * @return The cohort
+     */
+    public static GuidanceCohort of(MedicalInfo medicalInfo, int ageBandYears, double locationGridDegrees) {
+        if (medicalInfo == null) {
+            return new GuidanceCohort("Unknown", "Unknown", "None", "Unknown");
+        }
+
+        String ageBand = "Unknown";
+        if (medicalInfo.getAge() != null) {
+            int lower = medicalInfo.getAge() / ageBandYears * ageBandYears;
+            ageBand = lower + "-" + (lower + ageBandYears - 1);
+        }
+
+        String bloodType = medicalInfo.getBloodType() != null && !medicalInfo.getBloodType().isBlank()
+                ? medicalInfo.getBloodType().trim().toUpperCase(Locale.ROOT)
+                : "Unknown";
+
+        String allergies = "None";
+        if (medicalInfo.getAllergies() != null && !medicalInfo.getAllergies().isBlank()) {
+            allergies = Arrays.stream(medicalInfo.getAllergies().split(","))
+                    .map(allergy -> allergy.trim().toLowerCase(Locale.ROOT))
+                    .filter(allergy -> !allergy.isEmpty())
+                    .distinct()
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        String coarseLocation = "Unknown";
+        if (medicalInfo.getLastLatitude() != null && medicalInfo.getLastLongitude() != null) {
+            coarseLocation = snap(medicalInfo.getLastLatitude(), locationGridDegrees) + ", "
+                    + snap(medicalInfo.getLastLongitude(), locationGridDegrees);
+        }
+
+        return new GuidanceCohort(ageBand, bloodType, allergies, coarseLocation);
+    }
+
+    /**
+     * Build the user_profile prompt shared by every user of the cohort
+     *
+     * @return A text prompt with the cohort's user information
+     */
+    public String toUserProfilePrompt() {
+        return "User Information:\n" +
+                "- Name: " + NAME_PLACEHOLDER + "\n" +
+                "- Age: " + ageBand + "\n" +
+                "- Blood type: " + bloodType + "\n" +
+                "- Allergies: " + allergies + "\n" +
+                "- Location: " + coarseLocation + "\n";
+    }
+
+    /**
+     * Get the cohort of the baseline guidance, which is generated before any event and so ignores location
+     *
+     * @return The cohort with an unknown location
+     */
+    public GuidanceCohort withoutLocation() {
+        return new GuidanceCohort(ageBand, bloodType, allergies, "Unknown");
+    }
+
+    /**
+     * Personalise cohort guidance for a single user
+     *
+     * @param guidance The guidance returned for the cohort
+     * @param name The user's name
+     * @return The guidance addressed to the user
+     */
+    public static String personalise(String guidance, String name) {
+        return guidance.replace(NAME_PLACEHOLDER, name != null ? name : "");
+    }
+
+    private static double snap(double degrees, double gridDegrees) {
+        // Centre of the grid cell, rounded to avoid floating point noise in the prompt
+        double centre = (Math.floor(degrees / gridDegrees) + 0.5) * gridDegrees;
+        return Math.round(centre * 1000.0) / 1000.0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Processed event entity recording the last USGS version seen for an earthquake
+ * and the values users were last alerted with
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedEvent {
+
+    private String eventId;
+    private Long updated;
+    private Double alertedMagnitude;
+    private Double alertedLatitude;
+    private Double alertedLongitude;
+    // Last time users were alerted, null if they never were
+    private LocalDateTime alertedAt;
+    private LocalDateTime processedAt;
+
+    public boolean isAlerted() {
+        // Rows recorded before alerted_at existed only have the alerted magnitude
+        return alertedAt != null || alertedMagnitude != null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking client for the AI server.
+ * Requests are sent with the dedicated AI {@link HttpClient}; no thread is parked while the AI server works.
+ * Cancelling a returned future aborts its HTTP exchange.
+ */
+@Component
+@Slf4j
+public class AiClient {
+
+    @Value("${ai.server.url:http://127.0.0.1:8081/api/ai}")
+    private String aiServerUrl;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+
+    public AiClient(
+            @Qualifier("aiHttpClient") HttpClient httpClient,
+            ObjectMapper objectMapper,
+            @Value("${http.ai.read-timeout:60s}") Duration readTimeout) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Send a multimodal alert request to the AI server
+     *
+     * @param userProfile The user_profile prompt
+     * @param earthquakeInfo The earthquake_data prompt
+     * @param media Media parts (image, audio) to attach, may be empty
+     * @return A CompletableFuture with the AI message, completed exceptionally with
+     *         {@link IllegalStateException} if the AI server returned no message
+     */
+    public CompletableFuture<String> postMultimodalAlert(String userProfile, String earthquakeInfo, List<MediaPart> media) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("user_profile", userProfile);
+        fields.put("earthquake_data", earthquakeInfo);
+
+        String boundary = newBoundary();
+        return send(boundary, multipartBody(boundary, fields, media));
+    }
+
+    /**
+     * Send a multimodal alert request whose multipart body is produced by a stream
+     *
+     * @param boundary The multipart boundary used by the body, see {@link #newBoundary()}
+     * @param body Opens the multipart body, read while the request is sent
+     * @return A CompletableFuture with the AI message, completed exceptionally with
+     *         {@link IllegalStateException} if the AI server returned no message
+     */
+    public CompletableFuture<String> postMultimodalAlert(String boundary, Supplier<InputStream> body) {
+        return send(boundary, BodyPublishers.ofInputStream(body));
+    }
+
+    /**
+     * @return A new multipart boundary
+     */
+    public static String newBoundary() {
+        return "----AiServerBoundary" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Encode a text field part
+     */
+    static byte[] fieldPart(String boundary, String name, String value) {
+        return ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + name + "\"\r\n" +
+                "Content-Type: text/plain; charset=UTF-8\r\n\r\n" +
+                value + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode the headers of a file part, the content and a CRLF follow
+     */
+    static byte[] filePartHeader(String boundary, String name, String filename, String contentType) {
+        String safeFilename = filename != null ? filename.replace("\"", "'") : name;
+        return ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + safeFilename + "\"\r\n" +
+                "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encode the closing delimiter of a multipart body
+     */
+    static byte[] closingDelimiter(String boundary) {
+        return ("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private CompletableFuture<String> send(String boundary, BodyPublisher body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(aiServerUrl + "/multimodal_alert"))
+                .timeout(readTimeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(body)
+                .build();
+
+        CompletableFuture<HttpResponse<byte[]>> exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        return AiTaskExecutor.cancelWith(exchange.thenApply(this::extractAiMessage), exchange);
+    }
+
+    private String extractAiMessage(HttpResponse<byte[]> response) {
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new IllegalStateException("AI server responded with status " + response.statusCode());
+        }
+
+        try {
+            JsonNode aiMessage = objectMapper.readTree(response.body()).get("ai_message");
+            if (aiMessage == null || aiMessage.isNull()) {
+                throw new IllegalStateException("No ai_message in AI server response");
+            }
+            return aiMessage.asText();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid AI server response", e);
+        }
+    }
+
+    private static BodyPublisher multipartBody(String boundary, Map<String, String> fields, List<MediaPart> media) {
+        List<BodyPublisher> parts = new ArrayList<>();
+
+        fields.forEach((name, value) -> parts.add(BodyPublishers.ofByteArray(fieldPart(boundary, name, value))));
+
+        for (MediaPart part : media) {
+            parts.add(BodyPublishers.ofByteArray(filePartHeader(boundary, part.name(), part.filename(), part.contentType())));
+            // Streamed from the source, the file is never copied into a single buffer
+            parts.add(BodyPublishers.ofInputStream(part.content()));
+            parts.add(BodyPublishers.ofString("\r\n"));
+        }
+
+        parts.add(BodyPublishers.ofByteArray(closingDelimiter(boundary)));
+        return BodyPublishers.concat(parts.toArray(BodyPublisher[]::new));
+    }
+
+    /**
+     * A file part of the multimodal request
+     *
+     * @param name The form field name
+     * @param filename The original file name
+     * @param contentType The content type of the file
+     * @param content Opens the file content, called when the body is sent
+     */
+    public record MediaPart(String name, String filename, String contentType, Supplier<InputStream> content) {
+    }
+}
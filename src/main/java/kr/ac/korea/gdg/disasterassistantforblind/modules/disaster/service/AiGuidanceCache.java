@@ -0,0 +1,75 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounded TTL cache of AI guidance keyed by a hash of the user_profile and earthquake_data payload.
+ * Concurrent requests for the same payload share one in-flight AI call; failed calls are not cached.
+ */
+@Component
+public class AiGuidanceCache {
+
+    private final AsyncCache<String, String> cache;
+
+    public AiGuidanceCache(
+            @Value("${ai.guidance-cache.max-size:10000}") long maxSize,
+            @Value("${ai.guidance-cache.ttl:30m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Get the cached guidance for a payload, or request it if absent
+     *
+     * @param userProfile The normalized user_profile prompt
+     * @param earthquakeInfo The earthquake_data prompt
+     * @param request Starts the AI call when the payload is not cached
+     * @return The guidance and whether it was served from the cache
+     */
+    public Lookup getOrRequest(String userProfile, String earthquakeInfo, Supplier<CompletableFuture<String>> request) {
+        AtomicBoolean requested = new AtomicBoolean();
+        CompletableFuture<String> guidance = cache.get(key(userProfile, earthquakeInfo), (key, executor) -> {
+            requested.set(true);
+            return request.get();
+        });
+        return new Lookup(guidance, !requested.get());
+    }
+
+    /**
+     * @return Hit/miss statistics since startup
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static String key(String userProfile, String earthquakeInfo) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(userProfile.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(earthquakeInfo.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record Lookup(CompletableFuture<String> guidance, boolean cached) {
+    }
+}
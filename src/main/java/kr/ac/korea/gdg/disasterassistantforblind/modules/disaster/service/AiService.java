@@ -1,104 +1,67 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
 
-import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.EarthquakeMapper;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.Earthquake;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.GuidanceCohort;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service.MedicalInfoService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
-import jakarta.annotation.PreDestroy;
 
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Service
 @Slf4j
 public class AiService {
 
-    @Value("${ai.server.url:http://127.0.0.1:8081/api/ai}")
-    private String aiServerUrl;
-
-    private final RestTemplate restTemplate;
-    private final EarthquakeMapper earthquakeMapper;
-    private final MedicalInfoService medicalInfoService;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
-
-    public AiService(RestTemplate restTemplate, EarthquakeMapper earthquakeMapper, MedicalInfoService medicalInfoService) {
-        this.restTemplate = restTemplate;
-        this.earthquakeMapper = earthquakeMapper;
-        this.medicalInfoService = medicalInfoService;
-        log.info("Initialized AiService with AI server URL: {}", aiServerUrl);
-    }
-
     /**
-     * Process Earthquake data for a specific user using AI server
-     * This method can be called in a blocking or non-blocking way
-     * 
-     * @param earthquakeData The Earthquake data
-     * @param user The user data
-     * @return The response from AI server
+     * Guidance returned for a /prompt upload when the AI server could not answer
      */
-    public String processEarthquakeForUser(EarthquakeData earthquakeData, User user) {
-        try {
-            // Get medical info for the user
-            MedicalInfo medicalInfo = getMedicalInfoForUser(user.getId());
+    public static final String PROMPT_FALLBACK_GUIDANCE =
+            "Error processing your location, image, and voice data. Please stay in an open area if possible and wait for help.";
 
-            // Call AI server with text prompt
-            return callAiServerWithText(user, medicalInfo, null, null);
-        } catch (Exception e) {
-            log.error("Error processing Earthquake data for user: {}", user.getId(), e);
-            return "Error processing Earthquake data. Please stay safe and follow general Earthquake safety guidelines.";
-        }
-    }
+    @Value("${ai.cohort.age-band-years:10}")
+    private int cohortAgeBandYears;
 
-    /**
-     * Process user location, image data, and voice prompt using AI server
-     * 
-     * @param user The user data
-     * @param latitude Current latitude
-     * @param longitude Current longitude
-     * @param image Image file (JPEG)
-     * @param voice Voice file (WebM)
-     * @return The response from AI server
-     */
-    public String processUserLocationImageAndVoice(User user, Double latitude, Double longitude, MultipartFile image, MultipartFile voice) {
-        try {
-            // Get or create medical info for the user
-            MedicalInfo medicalInfo = getMedicalInfoForUser(user.getId());
+    @Value("${ai.cohort.location-grid-degrees:1.0}")
+    private double cohortLocationGridDegrees;
 
-            // Call AI server with direct file upload
-            return callAiServerWithFiles(user, medicalInfo, image, voice, latitude, longitude);
-        } catch (Exception e) {
-            log.error("Error processing location, image data, and voice prompt for user: {}", user.getId(), e);
-            return "Error processing your location, image, and voice data. Please stay in an open area if possible and wait for help.";
-        }
+    private final AiClient aiClient;
+    private final RecentEarthquakeSnapshot recentEarthquakeSnapshot;
+    private final MedicalInfoService medicalInfoService;
+    private final AiGuidanceCache aiGuidanceCache;
+    private final AiTaskExecutor aiTaskExecutor;
+
+    public AiService(AiClient aiClient, RecentEarthquakeSnapshot recentEarthquakeSnapshot,
+                     MedicalInfoService medicalInfoService, AiGuidanceCache aiGuidanceCache,
+                     AiTaskExecutor aiTaskExecutor) {
+        this.aiClient = aiClient;
+        this.recentEarthquakeSnapshot = recentEarthquakeSnapshot;
+        this.medicalInfoService = medicalInfoService;
+        this.aiGuidanceCache = aiGuidanceCache;
+        this.aiTaskExecutor = aiTaskExecutor;
     }
 
     /**
      * Get or create medical info for a user without updating location
      * 
-     * @param userId The user ID
+     * @param user The user data, its medical info is used when already loaded
      * @return The medical info
      */
-    private MedicalInfo getMedicalInfoForUser(String userId) {
+    private MedicalInfo getMedicalInfoForUser(User user) {
+        if (user.getMedicalInfo() != null) {
+            return user.getMedicalInfo();
+        }
+
         // Get existing medical info or create new one
+        String userId = user.getId();
         MedicalInfo medicalInfo = medicalInfoService.getMedicalInfoByUserId(userId);
         if (medicalInfo == null) {
             medicalInfo = new MedicalInfo();
@@ -109,59 +72,76 @@ public class AiService {
     }
 
     /**
-     * Process Earthquake data for a specific user asynchronously
-     * 
-     * @param earthquakeData The Earthquake data
-     * @param user The user data
-     * @return A CompletableFuture that will contain the response from AI server
+     * Get the guidance cohort a user belongs to
+     *
+     * @param user The user data, loaded together with its medical information
+     * @return The cohort built from the user's medical information
      */
-    public CompletableFuture<String> processEarthquakeForUserAsync(EarthquakeData earthquakeData, User user) {
-        return CompletableFuture.supplyAsync(() -> processEarthquakeForUser(earthquakeData, user), executorService);
+    public GuidanceCohort getCohortForUser(User user) {
+        return getCohort(user.getMedicalInfo());
     }
 
     /**
-     * Process user location, image data, and voice prompt asynchronously
-     * 
-     * @param user The user data
-     * @param latitude Current latitude
-     * @param longitude Current longitude
-     * @param image Image file (JPEG)
-     * @param voice Voice file (WebM)
-     * @return A CompletableFuture that will contain the response from AI server
+     * Get the guidance cohort of a medical profile
+     *
+     * @param medicalInfo The medical information, may be null
+     * @return The cohort built from the medical information
      */
-    public CompletableFuture<String> processUserLocationImageAndVoiceAsync(User user, Double latitude, Double longitude, MultipartFile image, MultipartFile voice) {
-        return CompletableFuture.supplyAsync(() -> processUserLocationImageAndVoice(user, latitude, longitude, image, voice), executorService);
+    public GuidanceCohort getCohort(MedicalInfo medicalInfo) {
+        return GuidanceCohort.of(medicalInfo, cohortAgeBandYears, cohortLocationGridDegrees);
     }
 
     /**
-     * Get recent earthquakes from the database
-     * 
-     * @return List of recent earthquakes
+     * Get Earthquake guidance for a cohort of users asynchronously.
+     * The guidance is shared by every user of the cohort and cached by prompt payload,
+     * so identical cohorts across events and polls cost a single AI call.
+     *
+     * @param earthquakeData The Earthquake data
+     * @param cohort The cohort
+     * @return The cohort guidance, still addressed to {@link GuidanceCohort#NAME_PLACEHOLDER}
      */
-    private List<Earthquake> getRecentEarthquakes() {
-        try {
-            // Get earthquakes from the last 24 hours
-            LocalDateTime since = LocalDateTime.now().minusHours(24);
-            return earthquakeMapper.findRecentEarthquakes(since);
-        } catch (Exception e) {
-            log.error("Error getting recent earthquakes", e);
-            return List.of();  // Return empty list on error
-        }
+    public AiGuidanceCache.Lookup processEarthquakeForCohortAsync(EarthquakeData earthquakeData, GuidanceCohort cohort) {
+        String userProfile = cohort.toUserProfilePrompt();
+        String earthquakeInfo = recentEarthquakeSnapshot.getEarthquakeInfoPrompt();
+        return aiGuidanceCache.getOrRequest(userProfile, earthquakeInfo,
+                () -> aiTaskExecutor.submitAsync(AiTaskExecutor.Lane.BROADCAST,
+                        () -> aiClient.postMultimodalAlert(userProfile, earthquakeInfo, List.of())));
     }
 
     /**
-     * Clean up resources when the service is destroyed
+     * @return Hit/miss statistics of the AI guidance cache
      */
-    @PreDestroy
-    public void cleanup() {
-        try {
-            if (!executorService.isShutdown()) {
-                executorService.shutdown();
-                log.info("Shut down executor service");
-            }
-        } catch (Exception e) {
-            log.error("Error cleaning up resources", e);
-        }
+    public CacheStats getGuidanceCacheStats() {
+        return aiGuidanceCache.stats();
+    }
+
+    /**
+     * Relay a /prompt upload (location, image data and voice prompt) to the AI server asynchronously.
+     * The media parts are streamed from the upload while the AI request is sent.
+     *
+     * @param user The user data
+     * @param upload The upload, its location part gives the user's current position
+     * @param timeout Time after which the AI call is dropped if it has not started
+     * @return A CompletableFuture that will contain the response from AI server; cancelling it cancels the AI call
+     */
+    public CompletableFuture<String> processPromptUploadAsync(User user, PromptUploadRelay.Upload upload, Duration timeout) {
+        CompletableFuture<String> task = aiTaskExecutor.submitAsync(AiTaskExecutor.Lane.INTERACTIVE, timeout, () -> {
+                    MedicalInfo medicalInfo = getMedicalInfoForUser(user);
+                    String boundary = AiClient.newBoundary();
+                    InputStream body = upload.openRelayBody(boundary, location -> {
+                        Map<String, String> fields = new LinkedHashMap<>();
+                        fields.put("user_profile", buildUserInfoPrompt(user, medicalInfo, location.getLatitude(), location.getLongitude()));
+                        fields.put("earthquake_data", recentEarthquakeSnapshot.getEarthquakeInfoPrompt());
+                        return fields;
+                    });
+                    log.info("Calling AI server with streamed media for user: {}", user.getId());
+                    return aiClient.postMultimodalAlert(boundary, () -> body);
+                });
+        return AiTaskExecutor.cancelWith(task
+                .exceptionally(ex -> {
+                    log.error("Error processing location, image data, and voice prompt for user: {}", user.getId(), ex);
+                    return PROMPT_FALLBACK_GUIDANCE;
+                }), task);
     }
 
     /**
@@ -179,108 +159,4 @@ public class AiService {
                 "- Allergies: " + (medicalInfo != null && medicalInfo.getAllergies() != null ? medicalInfo.getAllergies() : "None") + "\n" +
                 "- Location: " + (latitude != null && longitude != null ? latitude + ", " + longitude : "Unknown") + "\n";
     }
-
-    /**
-     * Build a prompt with Earthquake information
-     *
-     * @return A text prompt with Earthquake information
-     */
-    private String buildEarthquakeInfoPrompt() {
-        StringBuilder prompt = new StringBuilder();
-
-        // Recent earthquakes information
-        List<Earthquake> recentEarthquakes = getRecentEarthquakes();
-        if (!recentEarthquakes.isEmpty()) {
-            prompt.append("Recent Earthquakes Information:\n");
-            int count = 0;
-            for (Earthquake Earthquake : recentEarthquakes) {
-                prompt.append("- Magnitude: ").append(Earthquake.getMagnitude())
-                      .append(", Location: ").append(Earthquake.getLocation())
-                      .append(", Time: ").append(Earthquake.getTime())
-                      .append(", Depth: ").append(Earthquake.getDepth()).append(" km\n");
-
-                count++;
-                if (count >= 3) {  // Limit to 3 recent earthquakes
-                    break;
-                }
-            }
-        } else {
-            prompt.append("No recent earthquakes detected.\n");
-        }
-
-        return prompt.toString();
-    }
-
-    /**
-     * Call AI server with files (image and voice)
-     *
-     * @param user The user data
-     * @param medicalInfo The medical information
-     * @return The response from AI server
-     */
-    private String callAiServerWithText(User user, MedicalInfo medicalInfo, Double latitude, Double longitude) {
-        return callAiServerWithFiles(user, medicalInfo, null, null, latitude, longitude);
-    }
-
-    /**
-     * Call AI server with files (image and voice)
-     * 
-     * @param user The user data
-     * @param medicalInfo The medical information
-     * @param image Image file (JPEG)
-     * @param voice Voice file (WebM)
-     * @return The response from AI server
-     */
-    private String callAiServerWithFiles(User user, MedicalInfo medicalInfo, MultipartFile image, MultipartFile voice, Double latitude, Double longitude) {
-        try {
-            log.info("Calling AI server with files for user: {}", user.getId());
-
-            // Create headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-
-            // Create multipart request
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-
-            // Add user info as a separate parameter
-            String userInfo = buildUserInfoPrompt(user, medicalInfo, latitude, longitude);
-            body.add("user_profile", userInfo);
-
-            // Add Earthquake info as a separate parameter
-            String earthquakeInfo = buildEarthquakeInfoPrompt();
-            body.add("earthquake_data", earthquakeInfo);
-
-            // Add image if available
-            if (image != null && !image.isEmpty()) {
-                log.info("Adding image file to AI server request: {}, size: {}", image.getOriginalFilename(), image.getSize());
-                body.add("image", image.getResource());
-            }
-
-            // Add voice if available
-            if (voice != null && !voice.isEmpty()) {
-                log.info("Adding voice file to AI server request: {}, size: {}", voice.getOriginalFilename(), voice.getSize());
-                body.add("audio", voice.getResource());
-            }
-
-            // Create request entity
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-
-            // Call AI server
-            ResponseEntity<Map> response = restTemplate.postForEntity(
-                    aiServerUrl + "/multimodal_alert",
-                    requestEntity,
-                    Map.class
-            );
-
-            // Extract and return the text response
-            if (response.getBody() != null && response.getBody().containsKey("ai_message")) {
-                return response.getBody().get("ai_message").toString();
-            } else {
-                return "No response from AI server. Please stay in an open area if possible and wait for help.";
-            }
-        } catch (Exception e) {
-            log.error("Error calling AI server with files", e);
-            return "Error processing your location, image, and voice data. Please stay in an open area if possible and wait for help.";
-        }
-    }
 }
\ No newline at end of file
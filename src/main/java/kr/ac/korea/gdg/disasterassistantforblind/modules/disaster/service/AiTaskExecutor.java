@@ -0,0 +1,454 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Executor for AI server calls.
+ * Every task starts on its own virtual thread, but at most {@code ai.executor.max-in-flight} tasks
+ * are in flight at a time; the rest wait in a bounded FIFO queue per {@link Lane} and overflow is handled by the
+ * rejection policy. Asynchronous tasks hold their permit until the returned future completes, not while a thread
+ * is parked.
+ * Freed permits go to the queued tasks of the highest priority lane first, and {@code ai.executor.interactive-reserved}
+ * permits are only ever used by interactive tasks, so a broadcast fan-out cannot hold every permit.
+ * Cancelling the future of a task removes it from its queue, or cancels the future of its running AI call, and a
+ * queued task whose deadline has passed is dropped instead of started.
+ */
+@Component
+@Slf4j
+public class AiTaskExecutor {
+
+    public enum RejectionPolicy {
+        /** Fail the new task */
+        ABORT,
+        /** Fail the oldest queued task to make room for the new one */
+        DISCARD_OLDEST
+    }
+
+    /**
+     * Priority lanes, in the order freed permits are handed out
+     */
+    public enum Lane {
+        /** A user waiting on the other end, /prompt */
+        INTERACTIVE,
+        /** Earthquake guidance fan-out */
+        BROADCAST,
+        /** Work nobody is waiting for, such as baseline guidance */
+        BACKGROUND
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private int inFlight;
+    // Tasks of the other lanes in flight, at most maxInFlight - interactiveReserved
+    private int sharedInFlight;
+
+    private final int maxInFlight;
+    private final int interactiveReserved;
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+
+    public AiTaskExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${ai.executor.max-in-flight:32}") int maxInFlight,
+            @Value("${ai.executor.interactive-reserved:8}") int interactiveReserved,
+            @Value("${ai.executor.queue-capacity:100000}") int queueCapacity,
+            @Value("${ai.executor.rejection-policy:abort}") RejectionPolicy rejectionPolicy) {
+        if (interactiveReserved < 0 || interactiveReserved >= maxInFlight) {
+            throw new IllegalArgumentException("ai.executor.interactive-reserved must be between 0 and max-in-flight - 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.interactiveReserved = interactiveReserved;
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState(lane, meterRegistry));
+            Gauge.builder("ai.executor.queue.depth", this, aiTaskExecutor -> aiTaskExecutor.getQueueDepth(lane))
+                    .description("AI tasks waiting for a permit")
+                    .tag("lane", tag(lane))
+                    .register(meterRegistry);
+            Gauge.builder("ai.executor.in.flight", this, aiTaskExecutor -> aiTaskExecutor.getInFlight(lane))
+                    .description("AI tasks currently running")
+                    .tag("lane", tag(lane))
+                    .register(meterRegistry);
+        }
+
+        log.info("Initialized AI executor with {} permits ({} reserved for interactive tasks), queue capacity {} per lane, rejection policy {}",
+                maxInFlight, interactiveReserved, queueCapacity, rejectionPolicy);
+    }
+
+    /**
+     * Submit a non-blocking AI task; its permit is released when the returned future completes
+     *
+     * @param lane The priority lane
+     * @param task Starts the AI call and returns its future
+     * @return A CompletableFuture completed with the task result, or exceptionally with
+     *         {@link RejectedExecutionException} if the task was rejected
+     */
+    public <T> CompletableFuture<T> submitAsync(Lane lane, Supplier<CompletableFuture<T>> task) {
+        return submitAsync(lane, null, task);
+    }
+
+    /**
+     * Submit a non-blocking AI task with a deadline; its permit is released when the returned future completes.
+     * Cancelling the returned future cancels the task, whether it is queued or running.
+     *
+     * @param lane The priority lane
+     * @param timeout Time after which the task is dropped if it has not started, or null for no deadline
+     * @param task Starts the AI call and returns its future
+     * @return A CompletableFuture completed with the task result, or exceptionally with
+     *         {@link RejectedExecutionException} if the task was rejected or {@link TimeoutException} if its
+     *         deadline passed while it was queued
+     */
+    public <T> CompletableFuture<T> submitAsync(Lane lane, Duration timeout, Supplier<CompletableFuture<T>> task) {
+        LaneState state = lanes.get(lane);
+        long enqueuedAt = System.nanoTime();
+        QueuedTask<T> queuedTask = new QueuedTask<>(lane, task, enqueuedAt,
+                timeout != null ? enqueuedAt + timeout.toNanos() : null);
+        queuedTask.future().whenComplete((value, error) -> {
+            if (queuedTask.future().isCancelled()) {
+                cancelQueued(queuedTask);
+            }
+        });
+        QueuedTask<?> discarded = null;
+        boolean startNow = false;
+
+        lock.lock();
+        try {
+            // Tasks already queued in the lane go first
+            if (state.queue.isEmpty() && hasPermit(lane)) {
+                acquire(lane);
+                startNow = true;
+            } else if (state.queue.size() < queueCapacity) {
+                state.queue.addLast(queuedTask);
+            } else if (rejectionPolicy == RejectionPolicy.DISCARD_OLDEST && !state.queue.isEmpty()) {
+                discarded = state.queue.pollFirst();
+                state.queue.addLast(queuedTask);
+            } else {
+                discarded = queuedTask;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (discarded != null) {
+            state.rejectedCounter.increment();
+            discarded.future().completeExceptionally(new RejectedExecutionException("AI task queue is full"));
+        }
+        if (startNow) {
+            start(queuedTask);
+        }
+        return queuedTask.future();
+    }
+
+    /**
+     * Make cancelling a dependent future, such as one returned by {@code exceptionally}, cancel its source
+     *
+     * @param dependent The future returned to callers
+     * @param source The future of the AI task
+     * @return The dependent future
+     */
+    public static <T> CompletableFuture<T> cancelWith(CompletableFuture<T> dependent, CompletableFuture<?> source) {
+        dependent.whenComplete((value, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(true);
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * @return The number of queued tasks in every lane
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return lanes.values().stream().mapToInt(state -> state.queue.size()).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane The priority lane
+     * @return The number of queued tasks in the lane
+     */
+    public int getQueueDepth(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param lane The priority lane
+     * @return The number of running tasks of the lane
+     */
+    public int getInFlight(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    private boolean hasPermit(Lane lane) {
+        if (inFlight >= maxInFlight) {
+            return false;
+        }
+        return lane == Lane.INTERACTIVE || sharedInFlight < maxInFlight - interactiveReserved;
+    }
+
+    /**
+     * Must be called with the lock held
+     */
+    private void acquire(Lane lane) {
+        inFlight++;
+        lanes.get(lane).inFlight++;
+        if (lane != Lane.INTERACTIVE) {
+            sharedInFlight++;
+        }
+    }
+
+    private void start(QueuedTask<?> queuedTask) {
+        executor.execute(() -> run(queuedTask));
+    }
+
+    private <T> void run(QueuedTask<T> queuedTask) {
+        LaneState state = lanes.get(queuedTask.lane());
+        long startedAt = System.nanoTime();
+        state.waitTimer.record(startedAt - queuedTask.enqueuedAt(), TimeUnit.NANOSECONDS);
+
+        if (queuedTask.future().isCancelled()) {
+            // Cancelled between leaving the queue and starting
+            state.cancelled(false, state.estimatedExecutionNanos());
+            release(queuedTask.lane());
+            return;
+        }
+
+        CompletableFuture<T> result;
+        try {
+            result = queuedTask.task().get();
+        } catch (Throwable e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        // Cancelling the task aborts its AI call, which then releases the permit
+        CompletableFuture<T> call = result;
+        queuedTask.future().whenComplete((value, error) -> {
+            if (queuedTask.future().isCancelled() && !call.isDone()) {
+                long elapsed = System.nanoTime() - startedAt;
+                state.cancelled(true, Math.max(0, state.estimatedExecutionNanos() - elapsed));
+                call.cancel(true);
+            }
+        });
+
+        result.whenComplete((value, error) -> {
+            if (!queuedTask.future().isCancelled()) {
+                // Cancelled calls would skew the estimate of the time saved by cancelling
+                state.executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+            release(queuedTask.lane());
+            if (error != null) {
+                queuedTask.future().completeExceptionally(
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                queuedTask.future().complete(value);
+            }
+        });
+    }
+
+    /**
+     * Give the permit of a finished task back and hand it to the first queued task of the highest priority lane
+     * that may use it, dropping the tasks whose deadline has passed on the way
+     */
+    private void release(Lane finished) {
+        QueuedTask<?> next = null;
+        List<QueuedTask<?>> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            inFlight--;
+            lanes.get(finished).inFlight--;
+            if (finished != Lane.INTERACTIVE) {
+                sharedInFlight--;
+            }
+
+            for (LaneState state : lanes.values()) {
+                while (next == null && !state.queue.isEmpty() && hasPermit(state.lane)) {
+                    QueuedTask<?> candidate = state.queue.pollFirst();
+                    if (candidate.deadline() != null && now - candidate.deadline() >= 0) {
+                        expired.add(candidate);
+                    } else {
+                        next = candidate;
+                        acquire(state.lane);
+                    }
+                }
+                if (next != null) {
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (QueuedTask<?> task : expired) {
+            LaneState state = lanes.get(task.lane());
+            state.expired(state.estimatedExecutionNanos());
+            task.future().completeExceptionally(new TimeoutException("AI task deadline passed while queued"));
+        }
+        if (next != null) {
+            start(next);
+        }
+    }
+
+    /**
+     * Remove a cancelled task from its queue; a task that already left it is handled when it runs
+     */
+    private void cancelQueued(QueuedTask<?> queuedTask) {
+        LaneState state = lanes.get(queuedTask.lane());
+        boolean removed;
+        lock.lock();
+        try {
+            removed = state.queue.removeFirstOccurrence(queuedTask);
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            state.cancelled(false, state.estimatedExecutionNanos());
+        }
+    }
+
+    /**
+     * Clean up resources when the service is destroyed
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        log.info("Shut down AI executor");
+    }
+
+    private static String tag(Lane lane) {
+        return lane.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Queue, running count and metrics of a lane, guarded by the executor lock
+     */
+    private static final class LaneState {
+
+        private final Lane lane;
+        private final Deque<QueuedTask<?>> queue = new ArrayDeque<>();
+        private int inFlight;
+
+        private final Timer waitTimer;
+        private final Timer executionTimer;
+        private final Counter rejectedCounter;
+        private final Counter cancelledQueuedCounter;
+        private final Counter cancelledRunningCounter;
+        private final Counter expiredCounter;
+        private final Counter savedCounter;
+
+        private LaneState(Lane lane, MeterRegistry meterRegistry) {
+            this.lane = lane;
+            this.waitTimer = Timer.builder("ai.executor.wait")
+                    .description("Time AI tasks spend queued before a permit is available")
+                    .tag("lane", tag(lane))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.executionTimer = Timer.builder("ai.executor.execution")
+                    .description("Time AI tasks spend running")
+                    .tag("lane", tag(lane))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.rejectedCounter = Counter.builder("ai.executor.rejected")
+                    .description("AI tasks rejected because the queue was full")
+                    .tag("lane", tag(lane))
+                    .register(meterRegistry);
+            this.cancelledQueuedCounter = cancelledCounter(meterRegistry, lane, "queued");
+            this.cancelledRunningCounter = cancelledCounter(meterRegistry, lane, "running");
+            this.expiredCounter = Counter.builder("ai.executor.expired")
+                    .description("AI tasks dropped because their deadline passed while they were queued")
+                    .tag("lane", tag(lane))
+                    .register(meterRegistry);
+            this.savedCounter = Counter.builder("ai.executor.saved")
+                    .description("Estimated AI time saved by dropping cancelled and expired tasks, from the mean execution time")
+                    .tag("lane", tag(lane))
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        private long estimatedExecutionNanos() {
+            return (long) executionTimer.mean(TimeUnit.NANOSECONDS);
+        }
+
+        private void cancelled(boolean running, long savedNanos) {
+            (running ? cancelledRunningCounter : cancelledQueuedCounter).increment();
+            savedCounter.increment(savedNanos / 1e9);
+        }
+
+        private void expired(long savedNanos) {
+            expiredCounter.increment();
+            savedCounter.increment(savedNanos / 1e9);
+        }
+
+        private static Counter cancelledCounter(MeterRegistry meterRegistry, Lane lane, String state) {
+            return Counter.builder("ai.executor.cancelled")
+                    .description("AI tasks cancelled by their caller")
+                    .tag("lane", tag(lane))
+                    .tag("state", state)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @param deadline System.nanoTime() after which the task is dropped if still queued, or null
+     */
+    private record QueuedTask<T>(Lane lane, Supplier<CompletableFuture<T>> task, long enqueuedAt, Long deadline,
+                                 CompletableFuture<T> future) {
+        QueuedTask(Lane lane, Supplier<CompletableFuture<T>> task, long enqueuedAt, Long deadline) {
+            this(lane, task, enqueuedAt, deadline, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-to-first-alert of earthquake notifications, measured from the ingestion of the event.
+ * Ingestion time is wall-clock time carried in the event, so stages sent by other nodes are measured too.
+ */
+@Component
+public class AlertLatencyRecorder {
+
+    private final Timer broadcast;
+    private final Timer baseline;
+    private final Timer guidance;
+
+    public AlertLatencyRecorder(MeterRegistry meterRegistry) {
+        this.broadcast = timer(meterRegistry, "broadcast");
+        this.baseline = timer(meterRegistry, "baseline");
+        this.guidance = timer(meterRegistry, "guidance");
+    }
+
+    /**
+     * Record the cell broadcast of an event
+     *
+     * @param earthquakeData The earthquake data
+     */
+    public void broadcastSent(EarthquakeData earthquakeData) {
+        record(broadcast, earthquakeData);
+    }
+
+    /**
+     * Record the baseline script of a cohort sent to a user
+     *
+     * @param earthquakeData The earthquake data
+     */
+    public void baselineSent(EarthquakeData earthquakeData) {
+        record(baseline, earthquakeData);
+    }
+
+    /**
+     * Record the AI guidance sent to a user
+     *
+     * @param earthquakeData The earthquake data
+     */
+    public void guidanceSent(EarthquakeData earthquakeData) {
+        record(guidance, earthquakeData);
+    }
+
+    private static void record(Timer timer, EarthquakeData earthquakeData) {
+        if (earthquakeData.getDetectedAt() != null) {
+            timer.record(Math.max(0, System.currentTimeMillis() - earthquakeData.getDetectedAt()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("alert.time-to-first")
+                .description("Time from the ingestion of an earthquake to the notification of a stage")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,329 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster.LeaderLease;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.BaselineGuidanceMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.BaselineGuidance;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.BaselineGuidanceStats;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.GuidanceCohort;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service.MedicalInfoChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Baseline safety scripts generated by the AI server ahead of any event, one per guidance cohort without location.
+ * A profile change records the user's baseline cohort as pending in the baseline_guidance table; the leader generates
+ * pending and stale scripts in small batches during {@code ai.baseline.refresh-cron}, one AI call at a time and only
+ * while no live AI work is queued. A cohort whose generation failed backs off exponentially so it cannot hold back
+ * the others. At alert time the stored script is sent with the templated alert, so its delivery never waits for the
+ * AI server; cohorts without a row are recorded as pending in the background.
+ */
+@Service
+@Slf4j
+public class BaselineGuidanceService {
+
+    // Sent as earthquake_data when generating a baseline script
+    private static final String BASELINE_EARTHQUAKE_INFO =
+            "No earthquake is in progress. Write the first safety instructions this user should hear "
+            + "when an earthquake is detected near them, as a short script to be read aloud.";
+
+    // Cached for cohorts without a generated script
+    private static final String NO_SCRIPT = "";
+
+    // The AI server is considered down after this many failures in a row, the rest of the batch waits
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final BaselineGuidanceMapper baselineGuidanceMapper;
+    private final AiService aiService;
+    private final AiClient aiClient;
+    private final AiTaskExecutor aiTaskExecutor;
+    private final LeaderLease leaderLease;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+
+    // Scripts by cohort key
+    private final Cache<String, String> scripts;
+    // Cohorts first seen at alert time, by cohort key, waiting to be recorded as pending
+    private final Map<String, GuidanceCohort> requested = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile BaselineGuidanceStats stats = new BaselineGuidanceStats();
+
+    private final Timer generationTimer;
+    private final Counter generatedCounter;
+    private final Counter failedCounter;
+
+    public BaselineGuidanceService(
+            BaselineGuidanceMapper baselineGuidanceMapper,
+            AiService aiService,
+            AiClient aiClient,
+            AiTaskExecutor aiTaskExecutor,
+            LeaderLease leaderLease,
+            MeterRegistry meterRegistry,
+            @Value("${ai.baseline.enabled:true}") boolean enabled,
+            @Value("${ai.baseline.max-age:7d}") Duration maxAge,
+            @Value("${ai.baseline.batch-size:50}") int batchSize,
+            @Value("${ai.baseline.cache-ttl:10m}") Duration cacheTtl,
+            @Value("${ai.baseline.retry-backoff:30m}") Duration retryBackoff,
+            @Value("${ai.baseline.max-retry-backoff:1d}") Duration maxRetryBackoff) {
+        this.baselineGuidanceMapper = baselineGuidanceMapper;
+        this.aiService = aiService;
+        this.aiClient = aiClient;
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.leaderLease = leaderLease;
+        this.enabled = enabled;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        this.scripts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(cacheTtl)
+                .build();
+
+        this.generationTimer = Timer.builder("ai.baseline.generation")
+                .description("Time to generate one baseline guidance script, including the AI executor queue")
+                .register(meterRegistry);
+        this.generatedCounter = Counter.builder("ai.baseline.generated")
+                .description("Baseline guidance scripts generated")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("ai.baseline.failed")
+                .description("Baseline guidance scripts that failed to generate")
+                .register(meterRegistry);
+        Gauge.builder("ai.baseline.scripts", this, service -> service.stats.getTotal())
+                .description("Baseline guidance cohorts, generated or pending")
+                .register(meterRegistry);
+        Gauge.builder("ai.baseline.pending", this, service -> service.stats.getPending())
+                .description("Baseline guidance cohorts whose script has never been generated")
+                .register(meterRegistry);
+        Gauge.builder("ai.baseline.stale", this, service -> service.stats.getStale())
+                .description("Baseline guidance scripts older than ai.baseline.max-age")
+                .register(meterRegistry);
+        Gauge.builder("ai.baseline.storage", this, service -> service.stats.getScriptBytes())
+                .description("Bytes of stored baseline guidance scripts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ai.baseline.oldest.age", this, BaselineGuidanceService::getOldestAgeSeconds)
+                .description("Age of the oldest generated baseline guidance script")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue the baseline script of a changed profile for generation
+     *
+     * @param event The profile change, delivered once its transaction has committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMedicalInfoChanged(MedicalInfoChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            request(aiService.getCohort(event.medicalInfo()).withoutLocation());
+        } catch (Exception e) {
+            log.warn("Error queueing baseline guidance for user: {}", event.userId(), e);
+        }
+    }
+
+    /**
+     * Get the generated scripts of baseline cohorts; cohorts without one are queued for generation.
+     * Called on the alert path: a cache miss costs one batched read, recording new cohorts is left to
+     * {@link #flushRequested()}.
+     *
+     * @param baselineCohorts Cohorts without location
+     * @return The scripts found, still addressed to {@link GuidanceCohort#NAME_PLACEHOLDER}
+     */
+    public Map<GuidanceCohort, String> getScripts(Collection<GuidanceCohort> baselineCohorts) {
+        if (!enabled || baselineCohorts.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, GuidanceCohort> cohortsByKey = new HashMap<>();
+        for (GuidanceCohort cohort : baselineCohorts) {
+            cohortsByKey.put(key(cohort.toUserProfilePrompt()), cohort);
+        }
+
+        Map<String, String> found = scripts.getAll(cohortsByKey.keySet(), missing -> load(missing, cohortsByKey));
+        Map<GuidanceCohort, String> result = new HashMap<>();
+        found.forEach((key, script) -> {
+            if (!script.isEmpty()) {
+                result.put(cohortsByKey.get(key), script);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Generate a batch of pending and stale scripts, only on the leader
+     */
+    @Scheduled(cron = "${ai.baseline.refresh-cron:0 */10 1-5 * * *}")
+    public void refreshDue() {
+        if (!enabled || !leaderLease.isLeader()) {
+            return;
+        }
+        if (!refreshing.compareAndSet(false, true)) {
+            log.debug("Baseline guidance refresh already running");
+            return;
+        }
+
+        Thread.ofVirtual().name("baseline-guidance-refresh").start(() -> {
+            try {
+                refreshBatch();
+            } catch (Exception e) {
+                log.error("Error refreshing baseline guidance", e);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Record the cohorts first seen at alert time as pending, on every node
+     */
+    @Scheduled(fixedDelayString = "${ai.baseline.request-flush-interval:5000}")
+    public void flushRequested() {
+        for (Map.Entry<String, GuidanceCohort> entry : requested.entrySet()) {
+            try {
+                request(entry.getValue());
+                requested.remove(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                // Kept for the next flush
+                log.warn("Error queueing baseline guidance for cohort: {}", entry.getKey(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reload the counts behind the ai.baseline.* gauges
+     */
+    @Scheduled(fixedDelayString = "${ai.baseline.stats-interval:60000}")
+    public void refreshStats() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            stats = baselineGuidanceMapper.findStats(LocalDateTime.now().minus(maxAge));
+        } catch (Exception e) {
+            log.warn("Error reading baseline guidance stats", e);
+        }
+    }
+
+    private void refreshBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<BaselineGuidance> due = baselineGuidanceMapper.findDue(now.minus(maxAge), now, batchSize);
+        int generated = 0;
+        int attempted = 0;
+        int consecutiveFailures = 0;
+        for (BaselineGuidance baseline : due) {
+            // Live AI work comes first, the rest of the batch waits for the next run
+            if (aiTaskExecutor.getQueueDepth() > 0) {
+                log.info("AI executor busy, deferring {} baseline guidance scripts", due.size() - attempted);
+                break;
+            }
+            if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                log.warn("{} baseline guidance scripts failed in a row, deferring the other {}",
+                        consecutiveFailures, due.size() - attempted);
+                break;
+            }
+            attempted++;
+
+            Timer.Sample sample = Timer.start();
+            try {
+                String script = aiTaskExecutor.submitAsync(AiTaskExecutor.Lane.BACKGROUND, () -> aiClient.postMultimodalAlert(
+                        baseline.getUserProfile(), BASELINE_EARTHQUAKE_INFO, List.of())).join();
+                baselineGuidanceMapper.updateScript(baseline.getCohortKey(), script, LocalDateTime.now());
+                scripts.invalidate(baseline.getCohortKey());
+                generatedCounter.increment();
+                generated++;
+                consecutiveFailures = 0;
+            } catch (Exception e) {
+                failedCounter.increment();
+                consecutiveFailures++;
+                log.warn("Error generating baseline guidance for cohort: {}", baseline.getCohortKey(), e);
+                recordFailure(baseline);
+            } finally {
+                sample.stop(generationTimer);
+            }
+        }
+
+        log.info("Generated {} of {} due baseline guidance scripts", generated, due.size());
+        refreshStats();
+    }
+
+    private void recordFailure(BaselineGuidance baseline) {
+        int failedAttempts = baseline.getFailedAttempts() != null ? baseline.getFailedAttempts() : 0;
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(failedAttempts, 20));
+        if (backoff.compareTo(maxRetryBackoff) > 0) {
+            backoff = maxRetryBackoff;
+        }
+        try {
+            baselineGuidanceMapper.recordFailure(baseline.getCohortKey(), LocalDateTime.now().plus(backoff));
+        } catch (Exception e) {
+            log.warn("Error recording baseline guidance failure for cohort: {}", baseline.getCohortKey(), e);
+        }
+    }
+
+    private Map<String, String> load(Set<? extends String> keys, Map<String, GuidanceCohort> cohortsByKey) {
+        Map<String, String> loaded = new HashMap<>();
+        for (BaselineGuidance baseline : baselineGuidanceMapper.findGenerated(List.copyOf(keys))) {
+            loaded.put(baseline.getCohortKey(), baseline.getScript());
+        }
+        for (String key : keys) {
+            if (!loaded.containsKey(key)) {
+                // Cohorts that never went through a profile change are picked up on their first alert
+                requested.put(key, cohortsByKey.get(key));
+                loaded.put(key, NO_SCRIPT);
+            }
+        }
+        return loaded;
+    }
+
+    private void request(GuidanceCohort baselineCohort) {
+        String userProfile = baselineCohort.toUserProfilePrompt();
+        baselineGuidanceMapper.insertIfAbsent(BaselineGuidance.builder()
+                .cohortKey(key(userProfile))
+                .userProfile(userProfile)
+                .requestedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private double getOldestAgeSeconds() {
+        LocalDateTime oldest = stats.getOldestGeneratedAt();
+        return oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0;
+    }
+
+    private static String key(String userProfile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(userProfile.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -1,25 +1,35 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
 
-import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.EarthquakeMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster.LeaderLease;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster.LeadershipChangedEvent;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.IngestCursorMapper;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.Earthquake;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service.NotificationService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.geojson.Feature;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.geojson.FeatureCollection;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @Slf4j
@@ -31,37 +41,87 @@ public class DisasterDetectionService {
     @Value("${earthquake.api.min.magnitude:4.0}")
     private double minMagnitude;
 
-    private final UserService userService;
-    private final AiService aiService;
+    @Value("${earthquake.ingest.overlap:5m}")
+    private Duration ingestOverlap;
+
+    @Value("${earthquake.ingest.initial-lookback:1h}")
+    private Duration ingestInitialLookback;
+
+    @Value("${earthquake.ingest.batch-size:1000}")
+    private int ingestBatchSize;
+
     private final NotificationService notificationService;
     private final RestTemplate restTemplate;
-    private final EarthquakeMapper earthquakeMapper;
-
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+    private final GeoJsonFeatureReader geoJsonFeatureReader;
+    private final EarthquakeStore earthquakeStore;
+    private final IngestCursorMapper ingestCursorMapper;
+    private final UserLocationIndex userLocationIndex;
+    private final ImpactZoneCalculator impactZoneCalculator;
+    private final ProcessedEventRegistry processedEventRegistry;
+    private final EarthquakeFanoutService earthquakeFanoutService;
+    private final LeaderLease leaderLease;
+    private final EarthquakeAlertTemplates alertTemplates;
+    private final AlertLatencyRecorder alertLatencyRecorder;
+
+    // Only one poll runs at a time, whether scheduled or started on becoming leader
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    // Highest USGS "updated" timestamp ingested (epoch millis), mirrored in the ingest_cursors table
+    private Long highWaterMark;
+
+    private static final String INGEST_CURSOR_NAME = "usgs-earthquakes";
+    // USGS interprets times without a zone as UTC
+    private static final DateTimeFormatter UPDATED_AFTER_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
 
     public DisasterDetectionService(
-            UserService userService,
-            AiService aiService,
             NotificationService notificationService,
             RestTemplate restTemplate,
-            EarthquakeMapper earthquakeMapper) {
-        this.userService = userService;
-        this.aiService = aiService;
+            GeoJsonFeatureReader geoJsonFeatureReader,
+            EarthquakeStore earthquakeStore,
+            IngestCursorMapper ingestCursorMapper,
+            UserLocationIndex userLocationIndex,
+            ImpactZoneCalculator impactZoneCalculator,
+            ProcessedEventRegistry processedEventRegistry,
+            EarthquakeFanoutService earthquakeFanoutService,
+            LeaderLease leaderLease,
+            EarthquakeAlertTemplates alertTemplates,
+            AlertLatencyRecorder alertLatencyRecorder) {
         this.notificationService = notificationService;
         this.restTemplate = restTemplate;
-        this.earthquakeMapper = earthquakeMapper;
+        this.geoJsonFeatureReader = geoJsonFeatureReader;
+        this.earthquakeStore = earthquakeStore;
+        this.ingestCursorMapper = ingestCursorMapper;
+        this.userLocationIndex = userLocationIndex;
+        this.impactZoneCalculator = impactZoneCalculator;
+        this.processedEventRegistry = processedEventRegistry;
+        this.earthquakeFanoutService = earthquakeFanoutService;
+        this.leaderLease = leaderLease;
+        this.alertTemplates = alertTemplates;
+        this.alertLatencyRecorder = alertLatencyRecorder;
     }
 
+    /**
+     * Poll the earthquake API, only on the node holding the leader lease
+     */
     @Scheduled(fixedRateString = "${earthquake.api.polling.interval}")
     public void pollEarthquakeApi() {
+        if (!leaderLease.isLeader()) {
+            log.debug("Not the leader, skipping earthquake API poll");
+            return;
+        }
+        if (!pollLock.tryLock()) {
+            log.debug("Earthquake API poll already running");
+            return;
+        }
+
         log.info("Polling earthquake API at: {}", LocalDateTime.now());
 
         try {
-            // Get the current time in UTC for the updatedafter parameter
-            LocalDateTime utcNow = LocalDateTime.now();
-            // Go back 1 minute to ensure we don't miss any earthquakes
-            LocalDateTime updateAfterTime = utcNow.minusMinutes(1);
-            String updateAfterParam = updateAfterTime.format(ISO_FORMATTER).substring(0, 19);
+            // Resume from the highest "updated" timestamp ingested so far, re-reading the overlap window
+            // so that events published late by USGS are not missed
+            Instant updatedAfter = Instant.ofEpochMilli(getHighWaterMark()).minus(ingestOverlap);
+            String updateAfterParam = UPDATED_AFTER_FORMATTER.format(updatedAfter);
 
             // Build the URL with parameters
             String url = UriComponentsBuilder.fromUriString(earthquakeApiUrl)
@@ -73,33 +133,117 @@ public class DisasterDetectionService {
 
             log.info("Calling earthquake API with URL: {}", url);
 
-            // Call the earthquake API to get the latest earthquake data in GeoJSON format
-            FeatureCollection featureCollection = restTemplate.getForObject(url, FeatureCollection.class);
+            // Stream the GeoJSON response, features are stored and processed in bounded batches
+            IngestResult result = restTemplate.execute(url, HttpMethod.GET, null,
+                    response -> ingestFeatures(response.getBody(), true));
 
-            // Check if there are any earthquakes
-            if (featureCollection != null && featureCollection.getFeatures() != null && !featureCollection.getFeatures().isEmpty()) {
-                log.info("Received {} earthquakes from API", featureCollection.getFeatures().size());
+            if (result != null && result.count() > 0) {
+                log.info("Received {} earthquakes from API", result.count());
+                advanceHighWaterMark(result.maxUpdated());
+            } else {
+                log.info("No earthquakes found in the API response");
+            }
+        } catch (Exception e) {
+            // The cursor is not advanced, the next poll retries the same window
+            log.error("Error polling earthquake API", e);
+        } finally {
+            pollLock.unlock();
+        }
+    }
 
-                // Process each earthquake
-                for (Feature feature : featureCollection.getFeatures()) {
-                    // Convert GeoJSON feature to our internal EarthquakeData model
-                    EarthquakeData earthquakeData = convertFeatureToEarthquakeData(feature);
+    /**
+     * Poll right away on becoming leader, so failover takes at most one lease period instead of waiting for the
+     * next scheduled poll. On losing the lease, forget the cursor so it is read again from the database
+     * if this node becomes leader later.
+     *
+     * @param event The leadership change
+     */
+    @EventListener
+    public void onLeadershipChanged(LeadershipChangedEvent event) {
+        if (event.leader()) {
+            // Off the thread renewing the lease, a long poll must not delay the next renewal
+            Thread.ofVirtual().name("earthquake-poll-on-leadership").start(this::pollEarthquakeApi);
+        } else {
+            highWaterMark = null;
+            processedEventRegistry.clearCache();
+        }
+    }
 
-                    if (earthquakeData != null) {
+    /**
+     * Ingest a GeoJSON FeatureCollection, storing its earthquakes in batches of {@code earthquake.ingest.batch-size}
+     *
+     * @param in The GeoJSON input
+     * @param alert Whether users are alerted about new events and material revisions
+     * @return The number of earthquakes stored and the highest "updated" timestamp among them
+     * @throws IOException If the input cannot be read
+     */
+    public IngestResult ingestFeatures(InputStream in, boolean alert) throws IOException {
+        long[] stored = {0};
+        long[] maxUpdated = {Long.MIN_VALUE};
+
+        geoJsonFeatureReader.read(in, ingestBatchSize, features -> {
+            // Convert GeoJSON features to our internal EarthquakeData model
+            List<EarthquakeData> earthquakes = new ArrayList<>(features.size());
+            for (Feature feature : features) {
+                EarthquakeData earthquakeData = convertFeatureToEarthquakeData(feature);
+                if (earthquakeData != null) {
+                    if (alert) {
+                        earthquakeData.setDetectedAt(System.currentTimeMillis());
                         log.info("Earthquake detected: {}", earthquakeData);
+                    }
+                    earthquakes.add(earthquakeData);
+                    if (earthquakeData.getUpdated() != null) {
+                        maxUpdated[0] = Math.max(maxUpdated[0], earthquakeData.getUpdated());
+                    }
+                }
+            }
 
-                        // Store earthquake data in the database
-                        storeEarthquakeData(earthquakeData);
+            // Store the whole batch in the database with one batched upsert
+            earthquakeStore.upsertAll(earthquakes.stream().map(this::convertToEarthquakeEntity).toList());
+            stored[0] += earthquakes.size();
 
-                        // Process the earthquake data
-                        processEarthquake(earthquakeData);
+            if (alert) {
+                // Process the earthquake data only for new events or material revisions
+                for (EarthquakeData earthquakeData : earthquakes) {
+                    ProcessedEventRegistry.Revision revision = processedEventRegistry.evaluate(earthquakeData);
+                    if (revision == null) {
+                        continue;
+                    }
+                    if (revision.alert()) {
+                        processEarthquake(earthquakeData, revision);
+                    } else {
+                        processedEventRegistry.record(revision);
                     }
                 }
-            } else {
-                log.info("No earthquakes found in the API response");
             }
-        } catch (Exception e) {
-            log.error("Error polling earthquake API", e);
+        });
+
+        return new IngestResult(stored[0], maxUpdated[0] == Long.MIN_VALUE ? null : maxUpdated[0]);
+    }
+
+    /**
+     * Get the ingestion high-water mark, loading it from the database on first use
+     *
+     * @return The highest USGS "updated" timestamp ingested, in epoch millis
+     */
+    private long getHighWaterMark() {
+        if (highWaterMark == null) {
+            Long stored = ingestCursorMapper.findHighWaterMark(INGEST_CURSOR_NAME);
+            highWaterMark = stored != null ? stored : Instant.now().minus(ingestInitialLookback).toEpochMilli();
+            log.info("Earthquake ingestion resumes from high-water mark {}", Instant.ofEpochMilli(highWaterMark));
+        }
+        return highWaterMark;
+    }
+
+    /**
+     * Persist the highest "updated" timestamp of a completed poll as the new high-water mark
+     *
+     * @param maxUpdated The highest "updated" timestamp stored by the poll, or null
+     */
+    private void advanceHighWaterMark(Long maxUpdated) {
+        if (maxUpdated != null && maxUpdated > getHighWaterMark()) {
+            ingestCursorMapper.upsert(INGEST_CURSOR_NAME, maxUpdated, LocalDateTime.now());
+            highWaterMark = maxUpdated;
         }
     }
 
@@ -123,6 +267,7 @@ public class DisasterDetectionService {
             // Set properties
             earthquakeData.setMagnitude(feature.getProperties().getMag());
             earthquakeData.setLocation(feature.getProperties().getPlace());
+            earthquakeData.setUpdated(feature.getProperties().getUpdated());
 
             // Convert epoch time to LocalDateTime
             if (feature.getProperties().getTime() != null) {
@@ -147,35 +292,6 @@ public class DisasterDetectionService {
         }
     }
 
-    /**
-     * Store earthquake data in the database
-     * 
-     * @param earthquakeData The earthquake data to store
-     */
-    private void storeEarthquakeData(EarthquakeData earthquakeData) {
-        try {
-            // Check if earthquake already exists in the database
-            Earthquake existingEarthquake = earthquakeMapper.findById(earthquakeData.getId());
-
-            if (existingEarthquake == null) {
-                // Convert EarthquakeData to Earthquake entity
-                Earthquake earthquake = convertToEarthquakeEntity(earthquakeData);
-
-                // Insert earthquake into the database
-                earthquakeMapper.insert(earthquake);
-                log.info("Stored earthquake in database: {}", earthquakeData.getId());
-            } else {
-                // Update active status if needed
-                if (existingEarthquake.isActive() != earthquakeData.isActive()) {
-                    earthquakeMapper.updateActiveStatus(earthquakeData.getId(), earthquakeData.isActive());
-                    log.info("Updated earthquake active status in database: {}", earthquakeData.getId());
-                }
-            }
-        } catch (Exception e) {
-            log.error("Error storing earthquake data in database", e);
-        }
-    }
-
     /**
      * Convert EarthquakeData to Earthquake entity
      * 
@@ -192,29 +308,75 @@ public class DisasterDetectionService {
                 .depth(earthquakeData.getDepth())
                 .location(earthquakeData.getLocation())
                 .active(earthquakeData.isActive())
+                .updated(earthquakeData.getUpdated())
                 .createdAt(LocalDateTime.now())
                 .build();
     }
 
-    private void processEarthquake(EarthquakeData earthquakeData) {
-        // Get all users
-        List<User> users = userService.getAllUsers();
-
-        // For each user, send their information along with earthquake data to Ai API asynchronously
-        for (User user : users) {
-            // Send data to Ai API asynchronously
-            aiService.processEarthquakeForUserAsync(earthquakeData, user)
-                .thenAccept(aiResponse -> {
-                    // Send notification to the user with Ai's response when it's ready
-                    notificationService.sendNotification(user, aiResponse);
-                })
-                .exceptionally(ex -> {
-                    log.error("Error processing earthquake data for user: {}", user.getId(), ex);
-                    notificationService.sendNotification(user, 
-                        "Error processing earthquake data. Please stay safe and follow general earthquake safety guidelines.");
-                    return null;
-                });
+    /**
+     * Alert the users in the impact zone of an earthquake. The version is recorded as processed with the fan-out jobs,
+     * so if they cannot be queued the next poll alerts again instead of losing the alert.
+     *
+     * @param earthquakeData The earthquake data
+     * @param revision The version to record
+     */
+    private void processEarthquake(EarthquakeData earthquakeData, ProcessedEventRegistry.Revision revision) {
+        if (earthquakeData.getLatitude() == null || earthquakeData.getLongitude() == null) {
+            log.warn("Skipping earthquake without epicenter coordinates: {}", earthquakeData.getId());
+            processedEventRegistry.record(revision);
+            return;
         }
+
+        // Only users whose last known position lies inside the impact zone are alerted
+        double radiusKm = impactZoneCalculator.radiusKm(earthquakeData);
+        Set<Long> cellIds = userLocationIndex.findCellIdsWithin(
+                earthquakeData.getLatitude(), earthquakeData.getLongitude(), radiusKm);
+        log.info("Earthquake {} impact radius {} km reaches {} cells of {} located users",
+                earthquakeData.getId(), Math.round(radiusKm), cellIds.size(), userLocationIndex.size());
+
+        if (cellIds.isEmpty()) {
+            processedEventRegistry.record(revision);
+            return;
+        }
+
+        // The non-personalized alert is published once per affected cell topic, not once per user
+        notificationService.broadcastToCells(cellIds, buildEarthquakeAlert(earthquakeData));
+        alertLatencyRecorder.broadcastSent(earthquakeData);
+
+        // Personalized guidance is fanned out in shards that any node of the cluster can pick up
+        earthquakeFanoutService.enqueue(earthquakeData, revision);
+        earthquakeFanoutService.claimJobsNow();
+    }
+
+    /**
+     * Build the non-personalized alert broadcast to the cells of the impact zone
+     *
+     * @param earthquakeData The earthquake data
+     * @return The alert payload
+     */
+    private Map<String, Object> buildEarthquakeAlert(EarthquakeData earthquakeData) {
+        Map<String, Object> alert = new HashMap<>();
+        alert.put("type", "EARTHQUAKE_ALERT");
+        alert.put("eventId", earthquakeData.getId());
+        alert.put("magnitude", earthquakeData.getMagnitude());
+        alert.put("location", earthquakeData.getLocation());
+        alert.put("latitude", earthquakeData.getLatitude());
+        alert.put("longitude", earthquakeData.getLongitude());
+        alert.put("depth", earthquakeData.getDepth());
+        alert.put("message", alertTemplates.alert(earthquakeData));
+        alert.put("locale", alertTemplates.getLocale().toLanguageTag());
+        alert.put("time", earthquakeData.getTime() != null ? earthquakeData.getTime().toString() : null);
+        alert.put("timestamp", LocalDateTime.now().toString());
+        return alert;
+    }
+
+    /**
+     * Outcome of ingesting a FeatureCollection
+     *
+     * @param count The number of earthquakes stored
+     * @param maxUpdated The highest USGS "updated" timestamp stored, or null if none had one
+     */
+    public record IngestResult(long count, Long maxUpdated) {
     }
 
     @Data
@@ -227,6 +389,10 @@ public class DisasterDetectionService {
         private Double depth;
         private String location;
         private Boolean active;
+        // USGS "updated" timestamp (epoch millis), used as the event version
+        private Long updated;
+        // Wall-clock time the event was ingested for alerting (epoch millis), the origin of time-to-first-alert
+        private Long detectedAt;
 
         public boolean isActive() {
             return active != null && active;
@@ -0,0 +1,58 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Localized stage one earthquake alert texts.
+ * The templates of {@code alert.locale} are read from the messages/alerts bundle and parsed once at startup,
+ * so an alert is only a format call away when an event is ingested.
+ */
+@Component
+@Slf4j
+public class EarthquakeAlertTemplates {
+
+    private static final String BUNDLE = "messages.alerts";
+
+    private final Locale locale;
+    private final MessageFormat alert;
+    private final String unknownPlace;
+
+    public EarthquakeAlertTemplates(@Value("${alert.locale:ko}") Locale locale) {
+        ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, locale,
+                ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
+        this.locale = locale;
+        this.alert = new MessageFormat(bundle.getString("earthquake.alert"), locale);
+        this.unknownPlace = bundle.getString("earthquake.place.unknown");
+        log.info("Earthquake alert templates loaded for locale {}", bundle.getLocale());
+    }
+
+    /**
+     * @return The locale of the alert texts
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Format the alert broadcast to every user of the impact zone
+     *
+     * @param earthquakeData The earthquake data
+     * @return The alert text
+     */
+    public String alert(EarthquakeData earthquakeData) {
+        Object[] arguments = {
+                earthquakeData.getMagnitude() != null ? earthquakeData.getMagnitude() : 0.0,
+                earthquakeData.getLocation() != null ? earthquakeData.getLocation() : unknownPlace,
+                earthquakeData.getDepth() != null ? earthquakeData.getDepth() : 0.0
+        };
+        // MessageFormat is not thread-safe, a clone keeps the parsed pattern
+        return ((MessageFormat) alert.clone()).format(arguments);
+    }
+}
@@ -0,0 +1,130 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.IngestResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Operator-triggered backfill of the historical earthquake catalog.
+ * Set {@code earthquake.backfill.start-date} (and optionally {@code end-date}) to load a date range from the
+ * earthquake API, or {@code earthquake.backfill.file} to load a local GeoJSON file; the backfill runs once in the
+ * background after startup. Earthquakes are streamed and stored in bounded batches and never alert users.
+ */
+@Service
+@Slf4j
+public class EarthquakeBackfillService {
+
+    // USGS interprets times without a zone as UTC
+    private static final DateTimeFormatter QUERY_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
+
+    @Value("${earthquake.api.url}")
+    private String earthquakeApiUrl;
+
+    @Value("${earthquake.backfill.min-magnitude:${earthquake.api.min.magnitude:4.0}}")
+    private double minMagnitude;
+
+    @Value("${earthquake.backfill.start-date:}")
+    private String startDate;
+
+    @Value("${earthquake.backfill.end-date:}")
+    private String endDate;
+
+    @Value("${earthquake.backfill.file:}")
+    private String file;
+
+    // The API returns at most 20000 events per query, slices must stay below that
+    @Value("${earthquake.backfill.slice:7d}")
+    private Duration slice;
+
+    private final DisasterDetectionService disasterDetectionService;
+    private final RestTemplate restTemplate;
+
+    public EarthquakeBackfillService(DisasterDetectionService disasterDetectionService, RestTemplate restTemplate) {
+        this.disasterDetectionService = disasterDetectionService;
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Start the configured backfill, if any, on a background thread
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        if (!StringUtils.hasText(file) && !StringUtils.hasText(startDate)) {
+            return;
+        }
+        Thread.ofPlatform().name("earthquake-backfill").daemon().start(this::runBackfill);
+    }
+
+    private void runBackfill() {
+        long startedAt = System.nanoTime();
+        long total = 0;
+
+        try {
+            if (StringUtils.hasText(file)) {
+                log.info("Backfilling earthquakes from file: {}", file);
+                try (InputStream in = Files.newInputStream(Path.of(file))) {
+                    total = disasterDetectionService.ingestFeatures(in, false).count();
+                }
+            } else {
+                Instant start = LocalDate.parse(startDate).atStartOfDay(ZoneOffset.UTC).toInstant();
+                Instant end = StringUtils.hasText(endDate)
+                        ? LocalDate.parse(endDate).atStartOfDay(ZoneOffset.UTC).toInstant()
+                        : Instant.now();
+                log.info("Backfilling earthquakes from {} to {} in slices of {}", start, end, slice);
+
+                for (Instant from = start; from.isBefore(end); ) {
+                    Instant to = from.plus(slice).isBefore(end) ? from.plus(slice) : end;
+                    total += backfillSlice(from, to);
+                    from = to;
+                }
+            }
+
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+            log.info("Earthquake backfill finished: {} earthquakes in {} s ({} per minute)",
+                    total, String.format("%.1f", seconds), Math.round(total / Math.max(seconds, 0.001) * 60));
+        } catch (Exception e) {
+            log.error("Earthquake backfill failed after {} earthquakes", total, e);
+        }
+    }
+
+    /**
+     * Backfill the earthquakes of one time slice from the earthquake API
+     *
+     * @param from The slice start, inclusive
+     * @param to The slice end, exclusive
+     * @return The number of earthquakes stored
+     */
+    private long backfillSlice(Instant from, Instant to) {
+        String url = UriComponentsBuilder.fromUriString(earthquakeApiUrl)
+                .queryParam("format", "geojson")
+                .queryParam("starttime", QUERY_TIME_FORMATTER.format(from))
+                .queryParam("endtime", QUERY_TIME_FORMATTER.format(to))
+                .queryParam("minmagnitude", minMagnitude)
+                .queryParam("orderby", "time-asc")
+                .build()
+                .toUriString();
+
+        IngestResult result = restTemplate.execute(url, HttpMethod.GET, null,
+                response -> disasterDetectionService.ingestFeatures(response.getBody(), false));
+        long count = result != null ? result.count() : 0;
+        log.info("Backfilled {} earthquakes between {} and {}", count, from, to);
+        return count;
+    }
+}
\ No newline at end of file
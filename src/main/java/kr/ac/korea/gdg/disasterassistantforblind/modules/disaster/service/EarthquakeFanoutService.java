@@ -0,0 +1,354 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cluster.LeaderLease;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.FanoutJobMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.FanoutJob;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.GuidanceCohort;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service.NotificationOutbox;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service.NotificationService;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Distributes the personalized notifications of an earthquake across the nodes of the cluster.
+ * The leader splits the recipients of an event into {@code cluster.fanout.shards} shards by user ID and records
+ * one job per shard in the fanout_jobs table; every node claims jobs, at most {@code cluster.fanout.max-running-jobs}
+ * at a time, and extends the leases of its running jobs every {@code cluster.fanout.heartbeat-interval}. A job whose
+ * node died is claimed again once its lease expires, and a job that fails is retried until it has been claimed
+ * {@code cluster.fanout.max-attempts} times, then marked FAILED so that it stops blocking its shard.
+ * The jobs of a shard that run on different nodes run one after the other, so a user's notifications are always
+ * sent from a single node at a time.
+ * The templated alert is broadcast once to the cell topics of the impact zone before the jobs are queued; each page
+ * of recipients gets the stored baseline script of their cohort, then the AI guidance as it becomes ready, both as
+ * guidance correlated with the alert by event ID.
+ */
+@Service
+@Slf4j
+public class EarthquakeFanoutService {
+
+    private final FanoutJobMapper fanoutJobMapper;
+    private final LeaderLease leaderLease;
+    private final ObjectMapper objectMapper;
+    private final UserService userService;
+    private final AiService aiService;
+    private final NotificationService notificationService;
+    private final NotificationOutbox notificationOutbox;
+    private final UserLocationIndex userLocationIndex;
+    private final ImpactZoneCalculator impactZoneCalculator;
+    private final AlertLatencyRecorder alertLatencyRecorder;
+    private final BaselineGuidanceService baselineGuidanceService;
+    private final ProcessedEventRegistry processedEventRegistry;
+
+    private final int shardCount;
+    private final Duration jobLease;
+    private final int maxRunningJobs;
+    private final int maxAttempts;
+    private final Duration retention;
+
+    // Jobs running on this node by claim token
+    private final Map<String, FanoutJob> runningJobs = new ConcurrentHashMap<>();
+
+    public EarthquakeFanoutService(
+            FanoutJobMapper fanoutJobMapper,
+            LeaderLease leaderLease,
+            ObjectMapper objectMapper,
+            UserService userService,
+            AiService aiService,
+            NotificationService notificationService,
+            NotificationOutbox notificationOutbox,
+            UserLocationIndex userLocationIndex,
+            ImpactZoneCalculator impactZoneCalculator,
+            AlertLatencyRecorder alertLatencyRecorder,
+            BaselineGuidanceService baselineGuidanceService,
+            ProcessedEventRegistry processedEventRegistry,
+            @Value("${cluster.fanout.shards:8}") int shardCount,
+            @Value("${cluster.fanout.job-lease:5m}") Duration jobLease,
+            @Value("${cluster.fanout.max-running-jobs:4}") int maxRunningJobs,
+            @Value("${cluster.fanout.max-attempts:3}") int maxAttempts,
+            @Value("${cluster.fanout.retention:1d}") Duration retention) {
+        this.fanoutJobMapper = fanoutJobMapper;
+        this.leaderLease = leaderLease;
+        this.objectMapper = objectMapper;
+        this.userService = userService;
+        this.aiService = aiService;
+        this.notificationService = notificationService;
+        this.notificationOutbox = notificationOutbox;
+        this.userLocationIndex = userLocationIndex;
+        this.impactZoneCalculator = impactZoneCalculator;
+        this.alertLatencyRecorder = alertLatencyRecorder;
+        this.baselineGuidanceService = baselineGuidanceService;
+        this.processedEventRegistry = processedEventRegistry;
+        this.shardCount = shardCount;
+        this.jobLease = jobLease;
+        this.maxRunningJobs = maxRunningJobs;
+        this.maxAttempts = maxAttempts;
+        this.retention = retention;
+    }
+
+    /**
+     * Record the fan-out jobs of an earthquake event and, in the same transaction, the version they alert for
+     *
+     * @param earthquakeData The earthquake data
+     * @param revision The version recorded as processed once the jobs are queued
+     */
+    @Transactional
+    public void enqueue(EarthquakeData earthquakeData, ProcessedEventRegistry.Revision revision) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(earthquakeData);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error serializing earthquake " + earthquakeData.getId() + " for fan-out", e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<FanoutJob> jobs = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            jobs.add(FanoutJob.builder()
+                    .eventId(earthquakeData.getId())
+                    .shard(shard)
+                    .shardCount(shardCount)
+                    .payload(payload)
+                    .createdAt(now)
+                    .build());
+        }
+        fanoutJobMapper.insertAll(jobs);
+        processedEventRegistry.record(revision);
+        log.info("Queued {} fan-out jobs for earthquake {}", shardCount, earthquakeData.getId());
+    }
+
+    /**
+     * Claim runnable fan-out jobs while this node has capacity for them, each job runs on its own virtual thread
+     */
+    @Scheduled(fixedDelayString = "${cluster.fanout.claim-interval:1000}")
+    public synchronized void claimJobs() {
+        try {
+            int failed = fanoutJobMapper.failExpired(maxAttempts);
+            if (failed > 0) {
+                log.error("Gave up on {} fan-out jobs whose lease expired on their last attempt", failed);
+            }
+        } catch (Exception e) {
+            log.error("Error failing expired fan-out jobs", e);
+        }
+
+        while (runningJobs.size() < maxRunningJobs) {
+            FanoutJob job;
+            try {
+                String claimToken = UUID.randomUUID().toString();
+                if (fanoutJobMapper.claimNext(leaderLease.getNodeId(), claimToken, jobLease.toMillis(), maxAttempts) == 0) {
+                    return;
+                }
+                job = fanoutJobMapper.findByClaimToken(claimToken);
+            } catch (Exception e) {
+                log.error("Error claiming fan-out job", e);
+                return;
+            }
+
+            runningJobs.put(job.getClaimToken(), job);
+            Thread.ofVirtual().name("fanout-job-" + job.getId()).start(() -> run(job));
+        }
+    }
+
+    /**
+     * Claim jobs right away, off the calling thread, instead of waiting for the next claim interval
+     */
+    public void claimJobsNow() {
+        Thread.ofVirtual().name("fanout-claim").start(this::claimJobs);
+    }
+
+    /**
+     * Extend the leases of the jobs running on this node, which may take longer than one lease to send their guidance
+     */
+    @Scheduled(fixedDelayString = "${cluster.fanout.heartbeat-interval:60000}")
+    public void extendLeases() {
+        if (runningJobs.isEmpty()) {
+            return;
+        }
+        List<String> claimTokens = List.copyOf(runningJobs.keySet());
+        try {
+            int extended = fanoutJobMapper.extendLeases(claimTokens, jobLease.toMillis());
+            if (extended < claimTokens.size()) {
+                log.warn("Extended the leases of {} of {} running fan-out jobs, the others finished or were claimed again",
+                        extended, claimTokens.size());
+            }
+        } catch (Exception e) {
+            log.error("Error extending the leases of {} fan-out jobs", claimTokens.size(), e);
+        }
+    }
+
+    /**
+     * Delete completed and failed jobs older than the retention period
+     */
+    @Scheduled(cron = "${cluster.fanout.cleanup-cron:0 45 4 * * *}")
+    public void deleteCompleted() {
+        int deleted = fanoutJobMapper.deleteCompletedBefore(LocalDateTime.now().minus(retention));
+        log.info("Deleted {} finished fan-out jobs", deleted);
+    }
+
+    private void run(FanoutJob job) {
+        CompletableFuture<Void> result;
+        try {
+            result = process(job);
+        } catch (Exception e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((ignored, error) -> finish(job, error));
+    }
+
+    /**
+     * Mark a job done, or failed for another attempt, if this node still holds its lease
+     */
+    private void finish(FanoutJob job, Throwable error) {
+        runningJobs.remove(job.getClaimToken());
+        try {
+            if (error == null) {
+                if (fanoutJobMapper.complete(job.getId(), job.getClaimToken()) == 0) {
+                    log.warn("Fan-out job {} of earthquake {} lost its lease before completing and may be sent again",
+                            job.getId(), job.getEventId());
+                }
+                return;
+            }
+
+            log.error("Error processing fan-out job {} of earthquake {}, attempt {} of {}",
+                    job.getId(), job.getEventId(), job.getAttempts(), maxAttempts, error);
+            if (fanoutJobMapper.fail(job.getId(), job.getClaimToken(), maxAttempts) > 0 && job.getAttempts() >= maxAttempts) {
+                log.error("Gave up on fan-out job {} of earthquake {} shard {}", job.getId(), job.getEventId(), job.getShard());
+            }
+        } catch (Exception e) {
+            log.error("Error finishing fan-out job {}", job.getId(), e);
+        }
+    }
+
+    /**
+     * Send the alerts and personalized guidance of one shard
+     *
+     * @param job The claimed job
+     * @return A CompletableFuture completed once every notification of the shard is sent and persisted
+     */
+    private CompletableFuture<Void> process(FanoutJob job) throws JsonProcessingException {
+        EarthquakeData earthquakeData = objectMapper.readValue(job.getPayload(), EarthquakeData.class);
+
+        // Recipients are found again from this node's location index, the job only carries the event
+        double radiusKm = impactZoneCalculator.radiusKm(earthquakeData);
+        Set<String> userIds = userLocationIndex.findUserIdsWithin(
+                earthquakeData.getLatitude(), earthquakeData.getLongitude(), radiusKm).stream()
+                .filter(userId -> shardOf(userId, job.getShardCount()) == job.getShard())
+                .collect(Collectors.toSet());
+        if (userIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Users with the same guidance-relevant profile share one AI answer per event
+        Map<GuidanceCohort, CompletableFuture<String>> cohortGuidance = new HashMap<>();
+        List<CompletableFuture<Void>> sent = new ArrayList<>(userIds.size());
+        int[] aiCalls = {0};
+        int[] baselines = {0};
+
+        // Users are read page by page, each page is alerted right away and its guidance requested
+        userService.forEachUserPage(userIds, users -> {
+            notificationService.preloadRecipients(users);
+            List<GuidanceCohort> cohorts = users.stream().map(aiService::getCohortForUser).toList();
+
+            // Stage one: the stored baseline script of each cohort, no AI call involved; the templated alert itself
+            // was broadcast once to the cell topics
+            Map<GuidanceCohort, String> baselineScripts = getBaselineScripts(cohorts);
+            for (int i = 0; i < users.size(); i++) {
+                String baselineScript = baselineScripts.get(cohorts.get(i).withoutLocation());
+                if (baselineScript != null) {
+                    User user = users.get(i);
+                    sendGuidance(user, earthquakeData, GuidanceCohort.personalise(baselineScript, user.getName()), true);
+                    baselines[0]++;
+                }
+            }
+
+            // Stage two: the event-specific AI guidance, sent as it becomes ready
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                CompletableFuture<String> guidance = cohortGuidance.computeIfAbsent(cohorts.get(i), key -> {
+                    AiGuidanceCache.Lookup lookup = aiService.processEarthquakeForCohortAsync(earthquakeData, key);
+                    if (!lookup.cached()) {
+                        aiCalls[0]++;
+                    }
+                    return lookup.guidance();
+                });
+
+                sent.add(guidance
+                    .thenAccept(aiResponse -> {
+                        // Send notification to the user with Ai's response when it's ready
+                        sendGuidance(user, earthquakeData, GuidanceCohort.personalise(aiResponse, user.getName()), false);
+                    })
+                    .exceptionally(ex -> {
+                        log.error("Error processing earthquake data for user: {}", user.getId(), ex);
+                        sendGuidance(user, earthquakeData,
+                            "Error processing earthquake data. Please stay safe and follow general earthquake safety guidelines.", false);
+                        return null;
+                    }));
+            }
+        });
+
+        log.info("Earthquake {} shard {}/{}: {} users in {} cohorts, {} baseline scripts, {} AI calls, {} AI calls saved, guidance cache hit ratio {}",
+                earthquakeData.getId(), job.getShard(), job.getShardCount(), sent.size(), cohortGuidance.size(),
+                baselines[0], aiCalls[0], sent.size() - aiCalls[0],
+                String.format("%.3f", aiService.getGuidanceCacheStats().hitRate()));
+
+        // The next job of the shard may run on another node, which reads the sequence numbers from the outbox table
+        return CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new))
+                .thenRun(notificationOutbox::flush);
+    }
+
+    /**
+     * Get the baseline scripts of a page of users, the users wait for the AI guidance if they cannot be read
+     */
+    private Map<GuidanceCohort, String> getBaselineScripts(List<GuidanceCohort> cohorts) {
+        try {
+            return baselineGuidanceService.getScripts(
+                    cohorts.stream().map(GuidanceCohort::withoutLocation).collect(Collectors.toSet()));
+        } catch (Exception e) {
+            log.warn("Error reading baseline guidance, sending only the AI guidance", e);
+            return Map.of();
+        }
+    }
+
+    /**
+     * Send the guidance of an event to a user, as an update of the alert with the same event ID.
+     * The baseline script of the user's cohort comes first, the AI guidance replaces it when ready.
+     */
+    private void sendGuidance(User user, EarthquakeData earthquakeData, String message, boolean baseline) {
+        Map<String, Object> guidance = new HashMap<>();
+        guidance.put("eventId", earthquakeData.getId());
+        guidance.put("message", message);
+        guidance.put("baseline", baseline);
+        notificationService.sendNotification(user.getId(), "DISASTER_GUIDANCE", guidance);
+        if (baseline) {
+            alertLatencyRecorder.baselineSent(earthquakeData);
+        } else {
+            alertLatencyRecorder.guidanceSent(earthquakeData);
+        }
+    }
+
+    /**
+     * String hash codes are specified by the JDK, so every node maps a user to the same shard
+     */
+    private static int shardOf(String userId, int shardCount) {
+        return Math.floorMod(userId.hashCode(), shardCount);
+    }
+}
@@ -0,0 +1,54 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.EarthquakeMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.Earthquake;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Write path for ingested earthquakes.
+ * A batch of earthquakes is written with one JDBC batch of upserts on a MyBatis batch session,
+ * then merged into the recent earthquake snapshot.
+ */
+@Component
+@Slf4j
+public class EarthquakeStore {
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final RecentEarthquakeSnapshot recentEarthquakeSnapshot;
+
+    public EarthquakeStore(SqlSessionFactory sqlSessionFactory, RecentEarthquakeSnapshot recentEarthquakeSnapshot) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.recentEarthquakeSnapshot = recentEarthquakeSnapshot;
+    }
+
+    /**
+     * Insert or update a batch of earthquakes
+     *
+     * @param earthquakes The earthquakes to store
+     */
+    public void upsertAll(List<Earthquake> earthquakes) {
+        if (earthquakes.isEmpty()) {
+            return;
+        }
+
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            EarthquakeMapper batchMapper = session.getMapper(EarthquakeMapper.class);
+            for (Earthquake earthquake : earthquakes) {
+                batchMapper.upsert(earthquake);
+            }
+            session.flushStatements();
+            session.commit();
+        }
+        log.info("Upserted {} earthquakes in one batch", earthquakes.size());
+
+        for (Earthquake earthquake : earthquakes) {
+            recentEarthquakeSnapshot.onEarthquakeStored(earthquake);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.geojson.Feature;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader for GeoJSON FeatureCollections.
+ * Features are bound one at a time and handed over in bounded batches, so memory use does not
+ * depend on the size of the collection; everything outside the "features" array is skipped.
+ */
+@Component
+public class GeoJsonFeatureReader {
+
+    private final ObjectMapper objectMapper;
+
+    public GeoJsonFeatureReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Read the features of a FeatureCollection in batches
+     *
+     * @param in The GeoJSON input, closed once it is fully read
+     * @param batchSize The maximum number of features per batch
+     * @param batchConsumer Called with each batch; the list is reused and must not be kept
+     * @return The number of features read
+     * @throws IOException If the input is not a readable FeatureCollection
+     */
+    public long read(InputStream in, int batchSize, Consumer<List<Feature>> batchConsumer) throws IOException {
+        long count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("GeoJSON input is not an object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"features".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                List<Feature> batch = new ArrayList<>(batchSize);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    batch.add(objectMapper.readValue(parser, Feature.class));
+                    count++;
+                    if (batch.size() >= batchSize) {
+                        batchConsumer.accept(batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    batchConsumer.accept(batch);
+                }
+            }
+        }
+        return count;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,351 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downscales and recompresses images before they are sent to the AI server.
+ * Images are decoded with source subsampling, so a full-resolution raster is never built, resized to fit
+ * {@code ai.image.max-dimension} with their EXIF rotation applied, and re-encoded as JPEG at
+ * {@code ai.image.jpeg-quality}, lowered step by step while the result exceeds {@code ai.image.target-bytes}.
+ * The work runs on a small fixed pool of platform threads with a bounded queue; when the pool is saturated,
+ * or an image cannot be decoded or would not get smaller, the original is sent unchanged.
+ */
+@Component
+@Slf4j
+public class ImagePreprocessor {
+
+    private static final float MIN_JPEG_QUALITY = 0.4f;
+    private static final float JPEG_QUALITY_STEP = 0.15f;
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final long targetBytes;
+    private final ThreadPoolExecutor executor;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private final Timer waitTimer;
+    private final Timer cpuTimer;
+    private final DistributionSummary bytesSaved;
+    private final Counter rejectedCounter;
+    private final Counter unchangedCounter;
+
+    public ImagePreprocessor(
+            MeterRegistry meterRegistry,
+            @Value("${ai.image.preprocess.enabled:true}") boolean enabled,
+            @Value("${ai.image.max-dimension:1024}") int maxDimension,
+            @Value("${ai.image.jpeg-quality:0.8}") float jpegQuality,
+            @Value("${ai.image.target-bytes:262144}") long targetBytes,
+            @Value("${ai.image.pool-size:0}") int poolSize,
+            @Value("${ai.image.queue-capacity:64}") int queueCapacity) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.targetBytes = targetBytes;
+
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("image-preprocessing-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("ai.image.wait")
+                .description("Time images spend queued for preprocessing")
+                .register(meterRegistry);
+        this.cpuTimer = Timer.builder("ai.image.cpu")
+                .description("CPU time spent decoding, resizing and re-encoding an image")
+                .register(meterRegistry);
+        this.bytesSaved = DistributionSummary.builder("ai.image.bytes.saved")
+                .description("Bytes removed from an image by preprocessing")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.image.rejected")
+                .description("Images sent unchanged because the preprocessing queue was full")
+                .register(meterRegistry);
+        this.unchangedCounter = Counter.builder("ai.image.unchanged")
+                .description("Images sent unchanged because they could not be decoded or would not get smaller")
+                .register(meterRegistry);
+        Gauge.builder("ai.image.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Images waiting for a preprocessing thread")
+                .register(meterRegistry);
+
+        log.info("Initialized image preprocessing (enabled: {}) with {} threads, max dimension {}, JPEG quality {}",
+                enabled, threads, maxDimension, jpegQuality);
+    }
+
+    /**
+     * @return true if images are preprocessed
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Downscale and recompress an image, waiting for a preprocessing thread
+     *
+     * @param original The encoded image
+     * @param contentType The content type of the image
+     * @return The image to send, the original one if preprocessing did not make it smaller
+     */
+    public Image preprocess(byte[] original, String contentType) {
+        Image unchanged = new Image(original, contentType);
+        long enqueuedAt = System.nanoTime();
+
+        Future<byte[]> result;
+        try {
+            result = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                long cpuStartedAt = threadMXBean.getCurrentThreadCpuTime();
+                try {
+                    return downscale(original);
+                } finally {
+                    cpuTimer.record(threadMXBean.getCurrentThreadCpuTime() - cpuStartedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            return unchanged;
+        }
+
+        try {
+            byte[] processed = result.get();
+            if (processed == null || processed.length >= original.length) {
+                unchangedCounter.increment();
+                return unchanged;
+            }
+            bytesSaved.record(original.length - processed.length);
+            log.debug("Preprocessed image from {} to {} bytes", original.length, processed.length);
+            return new Image(processed, "image/jpeg");
+        } catch (ExecutionException e) {
+            log.warn("Could not preprocess image, sending it unchanged: {}", e.getCause().toString());
+            unchangedCounter.increment();
+            return unchanged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            return unchanged;
+        }
+    }
+
+    /**
+     * @return The re-encoded image, or null if it cannot be decoded
+     */
+    private byte[] downscale(byte[] original) throws IOException {
+        BufferedImage decoded;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                // Keep every n-th pixel while decoding, leaving at least maxDimension pixels for the final resize
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longest / maxDimension);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        BufferedImage resized = resize(decoded, ExifOrientation.read(original));
+        float quality = jpegQuality;
+        byte[] encoded = encodeJpeg(resized, quality);
+        while (encoded.length > targetBytes && quality - JPEG_QUALITY_STEP >= MIN_JPEG_QUALITY) {
+            quality -= JPEG_QUALITY_STEP;
+            encoded = encodeJpeg(resized, quality);
+        }
+        return encoded;
+    }
+
+    /**
+     * Scale an image to fit maxDimension and apply its EXIF rotation, since the metadata is not re-encoded
+     */
+    private BufferedImage resize(BufferedImage source, int orientation) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        boolean quarterTurn = orientation == 6 || orientation == 8;
+        BufferedImage target = new BufferedImage(quarterTurn ? height : width, quarterTurn ? width : height,
+                BufferedImage.TYPE_INT_RGB);
+
+        AffineTransform transform = new AffineTransform();
+        switch (orientation) {
+            case 3 -> {
+                transform.translate(width, height);
+                transform.rotate(Math.PI);
+            }
+            case 6 -> {
+                transform.translate(height, 0);
+                transform.rotate(Math.PI / 2);
+            }
+            case 8 -> {
+                transform.translate(0, width);
+                transform.rotate(-Math.PI / 2);
+            }
+            default -> {
+                // Upright, mirrored orientations are left as they are
+            }
+        }
+        transform.scale((double) width / source.getWidth(), (double) height / source.getHeight());
+
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Clean up resources when the service is destroyed
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        log.info("Shut down image preprocessing pool");
+    }
+
+    /**
+     * An image ready to be sent
+     *
+     * @param content The encoded image
+     * @param contentType Its content type
+     */
+    public record Image(byte[] content, String contentType) {
+    }
+
+    /**
+     * Reads the EXIF orientation tag of a JPEG without decoding it
+     */
+    static final class ExifOrientation {
+
+        private static final int ORIENTATION_TAG = 0x0112;
+
+        private ExifOrientation() {
+        }
+
+        /**
+         * @param jpeg The encoded image
+         * @return The EXIF orientation (1 to 8), 1 if absent or not a JPEG
+         */
+        static int read(byte[] jpeg) {
+            if (jpeg.length < 4 || (jpeg[0] & 0xff) != 0xff || (jpeg[1] & 0xff) != 0xd8) {
+                return 1;
+            }
+
+            int offset = 2;
+            while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xff) == 0xff) {
+                int marker = jpeg[offset + 1] & 0xff;
+                int length = ((jpeg[offset + 2] & 0xff) << 8) | (jpeg[offset + 3] & 0xff);
+                if (marker == 0xda || length < 2) {
+                    // Start of scan, the metadata segments are over
+                    return 1;
+                }
+                if (marker == 0xe1 && length >= 8 && startsWithExifHeader(jpeg, offset + 4)) {
+                    return readTiffOrientation(jpeg, offset + 10, Math.min(jpeg.length, offset + 2 + length));
+                }
+                offset += 2 + length;
+            }
+            return 1;
+        }
+
+        private static boolean startsWithExifHeader(byte[] data, int offset) {
+            return offset + 6 <= data.length
+                    && data[offset] == 'E' && data[offset + 1] == 'x' && data[offset + 2] == 'i' && data[offset + 3] == 'f'
+                    && data[offset + 4] == 0 && data[offset + 5] == 0;
+        }
+
+        private static int readTiffOrientation(byte[] data, int tiffStart, int end) {
+            if (tiffStart + 8 > end) {
+                return 1;
+            }
+            boolean littleEndian = data[tiffStart] == 'I';
+            int ifdOffset = tiffStart + readInt(data, tiffStart + 4, littleEndian);
+            if (ifdOffset + 2 > end || ifdOffset < tiffStart) {
+                return 1;
+            }
+
+            int entries = readShort(data, ifdOffset, littleEndian);
+            for (int i = 0; i < entries; i++) {
+                int entry = ifdOffset + 2 + i * 12;
+                if (entry + 12 > end) {
+                    return 1;
+                }
+                if (readShort(data, entry, littleEndian) == ORIENTATION_TAG) {
+                    int orientation = readShort(data, entry + 8, littleEndian);
+                    return orientation >= 1 && orientation <= 8 ? orientation : 1;
+                }
+            }
+            return 1;
+        }
+
+        private static int readShort(byte[] data, int offset, boolean littleEndian) {
+            int first = data[offset] & 0xff;
+            int second = data[offset + 1] & 0xff;
+            return littleEndian ? (second << 8) | first : (first << 8) | second;
+        }
+
+        private static int readInt(byte[] data, int offset, boolean littleEndian) {
+            int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+            int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+            return (high << 16) | low;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Estimates how far from the epicentre an earthquake is worth alerting about.
+ * The reach grows with magnitude (Dobrovolsky strain radius, 10^(0.43 M) km) and is measured
+ * from the hypocentre, so deeper events cover a smaller surface area.
+ */
+@Component
+public class ImpactZoneCalculator {
+
+    @Value("${earthquake.impact.radius-scale:1.0}")
+    private double radiusScale;
+
+    @Value("${earthquake.impact.min-radius-km:50}")
+    private double minRadiusKm;
+
+    @Value("${earthquake.impact.max-radius-km:2000}")
+    private double maxRadiusKm;
+
+    /**
+     * Compute the surface radius of the impact zone
+     *
+     * @param earthquakeData The earthquake data
+     * @return The radius around the epicentre in kilometres
+     */
+    public double radiusKm(EarthquakeData earthquakeData) {
+        double magnitude = earthquakeData.getMagnitude() != null ? earthquakeData.getMagnitude() : 0.0;
+        double depth = earthquakeData.getDepth() != null ? Math.max(earthquakeData.getDepth(), 0.0) : 0.0;
+
+        double hypocentralReach = Math.pow(10, 0.43 * magnitude) * radiusScale;
+        double surfaceReach = Math.sqrt(Math.max(hypocentralReach * hypocentralReach - depth * depth, 0.0));
+
+        return Math.min(Math.max(surfaceReach, minRadiusKm), maxRadiusKm);
+    }
+}
@@ -0,0 +1,168 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.ProcessedEventMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.ProcessedEvent;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service.DisasterDetectionService.EarthquakeData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Registry of earthquake events that have already been processed.
+ * Events are keyed by USGS event id and versioned by the USGS "updated" timestamp;
+ * a bounded LRU cache sits in front of the processed_events table, whose rows are kept for
+ * {@code earthquake.processed-events.retention}.
+ */
+@Component
+@Slf4j
+public class ProcessedEventRegistry {
+
+    private final ProcessedEventMapper processedEventMapper;
+    private final Cache<String, ProcessedEvent> cache;
+    private final Duration retention;
+
+    @Value("${earthquake.realert.magnitude-delta:0.5}")
+    private double realertMagnitudeDelta;
+
+    @Value("${earthquake.realert.distance-km:50}")
+    private double realertDistanceKm;
+
+    public ProcessedEventRegistry(
+            ProcessedEventMapper processedEventMapper,
+            @Value("${earthquake.processed-events.cache-size:10000}") long cacheSize,
+            @Value("${earthquake.processed-events.cache-ttl:48h}") Duration cacheTtl,
+            @Value("${earthquake.processed-events.retention:30d}") Duration retention) {
+        this.processedEventMapper = processedEventMapper;
+        this.retention = retention;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(cacheTtl)
+                .build();
+    }
+
+    /**
+     * Decide whether users should be alerted for a version of an earthquake event.
+     * An event is alerted the first time it is seen, unless it happened before the retention period, and again only
+     * when a newer USGS version changes the magnitude or the epicenter materially compared to what users were last told.
+     * Nothing is recorded until {@link #record(Revision)} is called once the alert has been handed off.
+     *
+     * @param earthquakeData The earthquake data
+     * @return The new version and whether to alert, or null if this version has already been processed
+     */
+    public Revision evaluate(EarthquakeData earthquakeData) {
+        String eventId = earthquakeData.getId();
+        ProcessedEvent previous = cache.get(eventId, processedEventMapper::findById);
+
+        if (previous != null && isSameOrOlderVersion(earthquakeData.getUpdated(), previous.getUpdated())) {
+            log.debug("Earthquake {} version {} already processed", eventId, earthquakeData.getUpdated());
+            return null;
+        }
+
+        boolean alert;
+        if (!earthquakeData.isActive()) {
+            alert = false;
+        } else if (previous == null || !previous.isAlerted()) {
+            alert = !isForgotten(earthquakeData);
+        } else {
+            alert = isMaterialRevision(previous, earthquakeData);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ProcessedEvent next = ProcessedEvent.builder()
+                .eventId(eventId)
+                .updated(earthquakeData.getUpdated())
+                .alertedMagnitude(alert ? earthquakeData.getMagnitude() : previous != null ? previous.getAlertedMagnitude() : null)
+                .alertedLatitude(alert ? earthquakeData.getLatitude() : previous != null ? previous.getAlertedLatitude() : null)
+                .alertedLongitude(alert ? earthquakeData.getLongitude() : previous != null ? previous.getAlertedLongitude() : null)
+                .alertedAt(alert ? now : previous != null ? previous.getAlertedAt() : null)
+                .processedAt(now)
+                .build();
+
+        if (previous != null) {
+            log.info("Earthquake {} revised to version {}, re-alert: {}", eventId, earthquakeData.getUpdated(), alert);
+        }
+        return new Revision(next, alert);
+    }
+
+    /**
+     * Record a processed version, in the transaction that hands off its alert if one is active.
+     * The cache is only updated once that transaction commits, so a failed hand-off is evaluated again on the next poll.
+     *
+     * @param revision The version returned by {@link #evaluate(EarthquakeData)}
+     */
+    public void record(Revision revision) {
+        ProcessedEvent event = revision.event();
+        processedEventMapper.upsert(event);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(event.getEventId(), event);
+                }
+            });
+        } else {
+            cache.put(event.getEventId(), event);
+        }
+    }
+
+    /**
+     * Delete the events processed before the retention period
+     */
+    @Scheduled(cron = "${earthquake.processed-events.cleanup-cron:0 15 4 * * *}")
+    public void deleteExpired() {
+        int deleted = processedEventMapper.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+        log.info("Deleted {} processed earthquake events", deleted);
+    }
+
+    /**
+     * Drop the cached events, so that the next lookups read what other nodes recorded in the meantime
+     */
+    public void clearCache() {
+        cache.invalidateAll();
+    }
+
+    private boolean isSameOrOlderVersion(Long updated, Long previousUpdated) {
+        return updated == null || (previousUpdated != null && updated <= previousUpdated);
+    }
+
+    /**
+     * Events that happened before the retention period may have been deleted, a late revision of one is not a new event
+     */
+    private boolean isForgotten(EarthquakeData earthquakeData) {
+        return earthquakeData.getTime() != null && earthquakeData.getTime().isBefore(LocalDateTime.now().minus(retention));
+    }
+
+    private boolean isMaterialRevision(ProcessedEvent previous, EarthquakeData earthquakeData) {
+        if (earthquakeData.getMagnitude() != null && previous.getAlertedMagnitude() != null
+                && Math.abs(earthquakeData.getMagnitude() - previous.getAlertedMagnitude()) >= realertMagnitudeDelta) {
+            return true;
+        }
+
+        if (earthquakeData.getLatitude() != null && earthquakeData.getLongitude() != null
+                && previous.getAlertedLatitude() != null && previous.getAlertedLongitude() != null) {
+            double shiftKm = UserLocationIndex.distanceKm(
+                    previous.getAlertedLatitude(), previous.getAlertedLongitude(),
+                    earthquakeData.getLatitude(), earthquakeData.getLongitude());
+            return shiftKm >= realertDistanceKm;
+        }
+
+        return false;
+    }
+
+    /**
+     * A version of an event to record
+     *
+     * @param event The processed event row
+     * @param alert Whether users are alerted for this version
+     */
+    public record Revision(ProcessedEvent event, boolean alert) {
+    }
+}
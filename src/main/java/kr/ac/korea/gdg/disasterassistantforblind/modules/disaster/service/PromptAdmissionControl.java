@@ -0,0 +1,312 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for /prompt, applied before an upload is read or an AI call is queued.
+ * A retry of a request in flight, recognized by the client's {@code Idempotency-Key} header, joins it instead of
+ * starting another AI call. The key is the only supported way to recognize a retry: a client resending an upload
+ * usually builds a new multipart body, so nothing in the request itself identifies it. Requests without a key, or
+ * with a new one, are processed on their own: the user's token bucket must have a token, or the request is rejected
+ * with 429, and the interactive AI lane must not be overloaded, or it is rejected with 503: too many admitted requests
+ * in flight, too many interactive tasks queued, or queued tasks while the recent /prompt latency exceeds
+ * {@code prompt.admission.target-latency}.
+ * Both rejections carry a Retry-After delay.
+ */
+@Component
+@Slf4j
+public class PromptAdmissionControl {
+
+    // Weight of the latest sample in the latency average
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final AiTaskExecutor aiTaskExecutor;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxInFlight;
+    private final int maxQueueDepth;
+    private final long targetLatencyNanos;
+
+    private final Cache<String, TokenBucket> buckets;
+    // Guidance of the requests in flight by user and idempotency key
+    private final Map<String, SharedGuidance> inFlightByRequest = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Exponentially weighted average of the admitted requests' latency, as double bits
+    private final AtomicLong averageLatencyNanos = new AtomicLong(Double.doubleToLongBits(0));
+
+    private final Counter admittedCounter;
+    private final Counter coalescedCounter;
+    private final Counter rateLimitedCounter;
+    private final Counter overloadedCounter;
+
+    public PromptAdmissionControl(
+            AiTaskExecutor aiTaskExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${prompt.admission.rate-per-minute:6}") double ratePerMinute,
+            @Value("${prompt.admission.burst:3}") int burst,
+            @Value("${prompt.admission.max-in-flight:64}") int maxInFlight,
+            @Value("${prompt.admission.max-queue-depth:32}") int maxQueueDepth,
+            @Value("${prompt.admission.target-latency:20s}") Duration targetLatency,
+            @Value("${prompt.admission.bucket-idle-ttl:10m}") Duration bucketIdleTtl) {
+        this.aiTaskExecutor = aiTaskExecutor;
+        this.emissionIntervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / ratePerMinute);
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.maxInFlight = maxInFlight;
+        this.maxQueueDepth = maxQueueDepth;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(bucketIdleTtl)
+                .build();
+
+        this.admittedCounter = outcomeCounter(meterRegistry, "admitted");
+        this.coalescedCounter = outcomeCounter(meterRegistry, "coalesced");
+        this.rateLimitedCounter = outcomeCounter(meterRegistry, "rate_limited");
+        this.overloadedCounter = outcomeCounter(meterRegistry, "overloaded");
+        Gauge.builder("prompt.admission.in.flight", inFlight, AtomicInteger::get)
+                .description("Admitted /prompt requests waiting for their guidance")
+                .register(meterRegistry);
+        Gauge.builder("prompt.admission.latency", this, control -> control.getAverageLatencyNanos() / 1e9)
+                .description("Smoothed latency of admitted /prompt requests")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decide whether a /prompt request is processed
+     *
+     * @param userId The user ID
+     * @param idempotencyKey The client's Idempotency-Key header, the same for every retry of a prompt, or null
+     * @return The decision; an {@link Admitted} request must be tracked once its AI call is started
+     */
+    public Decision admit(String userId, String idempotencyKey) {
+        String requestKey = idempotencyKey != null && !idempotencyKey.isBlank() ? userId + ':' + idempotencyKey : null;
+        SharedGuidance existing = requestKey != null ? inFlightByRequest.get(requestKey) : null;
+        if (existing != null && existing.join()) {
+            coalescedCounter.increment();
+            return new Coalesced(existing);
+        }
+
+        long retryAfterNanos = buckets.get(userId, id -> new TokenBucket()).tryAcquire(System.nanoTime());
+        if (retryAfterNanos > 0) {
+            rateLimitedCounter.increment();
+            return new Rejected(429, "Too many requests, please wait before trying again", seconds(retryAfterNanos));
+        }
+
+        String overload = overloadReason();
+        if (overload != null) {
+            overloadedCounter.increment();
+            log.warn("Shedding /prompt request for user {}: {}", userId, overload);
+            return new Rejected(503, "The assistant is busy, please try again shortly", seconds(retryAfterOverload()));
+        }
+
+        SharedGuidance shared = new SharedGuidance();
+        if (requestKey != null) {
+            // A request whose waiters have all left is being cancelled, this one replaces it
+            SharedGuidance raced = inFlightByRequest.compute(requestKey,
+                    (key, current) -> current != null && current.join() ? current : shared);
+            if (raced != shared) {
+                coalescedCounter.increment();
+                return new Coalesced(raced);
+            }
+        }
+        inFlight.incrementAndGet();
+        admittedCounter.increment();
+        return new Admitted(requestKey, shared, System.nanoTime());
+    }
+
+    private String overloadReason() {
+        int queueDepth = aiTaskExecutor.getQueueDepth(AiTaskExecutor.Lane.INTERACTIVE);
+        if (inFlight.get() >= maxInFlight) {
+            return inFlight.get() + " requests in flight";
+        }
+        if (queueDepth >= maxQueueDepth) {
+            return queueDepth + " interactive AI tasks queued";
+        }
+        if (queueDepth > 0 && getAverageLatencyNanos() > targetLatencyNanos) {
+            return "latency " + Math.round(getAverageLatencyNanos() / 1e9) + "s above target with queued tasks";
+        }
+        return null;
+    }
+
+    private long retryAfterOverload() {
+        // A slot is expected to free up within about one average request
+        return Math.max(TimeUnit.SECONDS.toNanos(1), (long) getAverageLatencyNanos());
+    }
+
+    private double getAverageLatencyNanos() {
+        return Double.longBitsToDouble(averageLatencyNanos.get());
+    }
+
+    private void recordLatency(long latencyNanos) {
+        averageLatencyNanos.getAndUpdate(bits -> {
+            double average = Double.longBitsToDouble(bits);
+            double updated = average == 0 ? latencyNanos : average + LATENCY_SMOOTHING * (latencyNanos - average);
+            return Double.doubleToLongBits(updated);
+        });
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("prompt.admission")
+                .description("/prompt admission decisions")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Outcome of {@link #admit(String, String)}
+     */
+    public sealed interface Decision permits Admitted, Coalesced, Rejected {
+    }
+
+    /**
+     * Guidance of a request in flight, shared with its duplicates.
+     * Each request waiting for it counts as a waiter; the AI call is cancelled once the last one has left.
+     */
+    private static final class SharedGuidance {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger(1);
+        private volatile CompletableFuture<String> source;
+
+        /**
+         * @return false if every waiter has already left, the request can no longer be joined
+         */
+        private boolean join() {
+            return waiters.getAndUpdate(count -> count == 0 ? 0 : count + 1) > 0;
+        }
+
+        private void leave() {
+            CompletableFuture<String> guidance = source;
+            if (waiters.decrementAndGet() == 0 && guidance != null) {
+                guidance.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The request is processed; its guidance is shared with the user's retries carrying the same Idempotency-Key
+     * until it completes
+     */
+    public final class Admitted implements Decision {
+
+        private final String requestKey;
+        private final SharedGuidance shared;
+        private final long admittedAt;
+
+        private Admitted(String requestKey, SharedGuidance shared, long admittedAt) {
+            this.requestKey = requestKey;
+            this.shared = shared;
+            this.admittedAt = admittedAt;
+        }
+
+        /**
+         * Share the guidance of the request and release its admission once the guidance completes
+         *
+         * @param guidance The guidance future, or a failed future if the AI call could not be started
+         */
+        public void track(CompletableFuture<String> guidance) {
+            shared.source = guidance;
+            guidance.whenComplete((result, error) -> {
+                if (requestKey != null) {
+                    inFlightByRequest.remove(requestKey, shared);
+                }
+                inFlight.decrementAndGet();
+                if (error == null) {
+                    recordLatency(System.nanoTime() - admittedAt);
+                    shared.result.complete(result);
+                } else {
+                    shared.result.completeExceptionally(error);
+                }
+            });
+        }
+
+        /**
+         * The request no longer waits for its guidance, its AI call is cancelled unless a duplicate still waits
+         */
+        public void leave() {
+            shared.leave();
+        }
+    }
+
+    /**
+     * A request with the same Idempotency-Key is already in flight, this request waits for its guidance
+     */
+    public static final class Coalesced implements Decision {
+
+        private final SharedGuidance shared;
+
+        private Coalesced(SharedGuidance shared) {
+            this.shared = shared;
+        }
+
+        /**
+         * @return The guidance of the request in flight
+         */
+        public CompletableFuture<String> guidance() {
+            return shared.result;
+        }
+
+        /**
+         * The request no longer waits for the guidance, the AI call is cancelled if no other request waits
+         */
+        public void leave() {
+            shared.leave();
+        }
+    }
+
+    /**
+     * The request is rejected
+     *
+     * @param status 429 or 503
+     * @param message The error message
+     * @param retryAfterSeconds Delay before the client should retry
+     */
+    public record Rejected(int status, String message, long retryAfterSeconds) implements Decision {
+    }
+
+    /**
+     * Lock-free token bucket implemented as a generic cell rate algorithm: a single theoretical arrival time is
+     * advanced by one emission interval per request, and a request is allowed while that time stays within the
+     * burst tolerance of now
+     */
+    final class TokenBucket {
+
+        private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long next = Math.max(arrival - now, 0) + now + emissionIntervalNanos;
+                long wait = next - now - burstToleranceNanos - emissionIntervalNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.dto.LocationRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Relays /prompt uploads to the AI server without buffering them.
+ * The incoming multipart request is parsed as a stream and re-encoded on the fly into the AI request body:
+ * image and voice parts are forwarded while they arrive, through the few fixed-size chunks the AI HTTP client
+ * has in flight, and the text fields built from the location part are appended at the end, so the location
+ * may come before or after the media. Images are downscaled by the {@link ImagePreprocessor} when it is enabled,
+ * which is the only case where a part is read whole before it is forwarded.
+ */
+@Component
+@Slf4j
+public class PromptUploadRelay {
+
+    private static final String LOCATION_PART = "location";
+    private static final String IMAGE_PART = "image";
+    private static final int MAX_LOCATION_BYTES = 16 * 1024;
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper objectMapper;
+    private final ImagePreprocessor imagePreprocessor;
+    private final long maxFileSize;
+    private final long maxRequestSize;
+    private final DistributionSummary uploadSize;
+
+    public PromptUploadRelay(
+            ObjectMapper objectMapper,
+            ImagePreprocessor imagePreprocessor,
+            MeterRegistry meterRegistry,
+            @Value("${prompt.upload.max-file-size:10MB}") DataSize maxFileSize,
+            @Value("${prompt.upload.max-request-size:21MB}") DataSize maxRequestSize) {
+        this.objectMapper = objectMapper;
+        this.imagePreprocessor = imagePreprocessor;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.maxRequestSize = maxRequestSize.toBytes();
+        this.uploadSize = DistributionSummary.builder("prompt.upload.size")
+                .description("Media bytes relayed from /prompt uploads to the AI server")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param request The HTTP request
+     * @return true if the request has a multipart body
+     */
+    public boolean isMultipart(HttpServletRequest request) {
+        return JakartaServletFileUpload.isMultipartContent(request);
+    }
+
+    /**
+     * Start reading a multipart upload; its parts are consumed when the relay body is sent
+     *
+     * @param request The HTTP request, its body must not have been read
+     * @return The upload
+     * @throws IOException If the multipart body cannot be read
+     */
+    public Upload open(HttpServletRequest request) throws IOException {
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> fileUpload = new JakartaServletFileUpload<>();
+        fileUpload.setFileSizeMax(maxFileSize);
+        fileUpload.setSizeMax(maxRequestSize);
+        return new Upload(fileUpload.getItemIterator(request));
+    }
+
+    /**
+     * A /prompt upload being relayed.
+     * The AI call reads it while it is sent. When the call ended or never started without reading all of it, the rest
+     * is drained, so the location is always read.
+     */
+    public final class Upload {
+
+        private final FileItemInputIterator parts;
+        private final CompletableFuture<LocationRequest> consumed = new CompletableFuture<>();
+        private final CompletableFuture<Void> relayOpened = new CompletableFuture<>();
+        // Guards the part iterator, shared by the relay and the request thread
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile boolean aborted;
+        private boolean opened;
+        private LocationRequest location;
+
+        private Upload(FileItemInputIterator parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Open the AI request body; it can only be opened once
+         *
+         * @param boundary The multipart boundary of the AI request
+         * @param trailingFields Builds the text fields appended after the media from the location part
+         * @return The multipart body
+         */
+        public InputStream openRelayBody(String boundary, Function<LocationRequest, Map<String, String>> trailingFields) {
+            lock.lock();
+            try {
+                if (opened) {
+                    throw new IllegalStateException("The upload has already been relayed");
+                }
+                opened = true;
+            } finally {
+                lock.unlock();
+            }
+            relayOpened.complete(null);
+            return new RelayInputStream(boundary, trailingFields);
+        }
+
+        /**
+         * @return A CompletableFuture completed once the AI call opened the relay body
+         */
+        public CompletableFuture<Void> relayOpened() {
+            return relayOpened;
+        }
+
+        /**
+         * @return A CompletableFuture completed with the location once the whole upload has been read, or
+         *         exceptionally if it could not be read, exceeded the size limits or had no location part
+         */
+        public CompletableFuture<LocationRequest> consumed() {
+            return consumed;
+        }
+
+        /**
+         * Read the rest of the upload once the AI call is no longer reading it, discarding the media parts.
+         * The next read of the relay body fails.
+         */
+        public void drain() {
+            aborted = true;
+            lock.lock();
+            try {
+                if (consumed.isDone()) {
+                    return;
+                }
+                readRemaining();
+            } catch (IOException | RuntimeException e) {
+                consumed.completeExceptionally(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Stop relaying, the next read of the relay body fails
+         */
+        public void abort() {
+            aborted = true;
+            consumed.completeExceptionally(new IOException("Upload aborted"));
+        }
+
+        private void readRemaining() throws IOException {
+            Part part;
+            while ((part = nextPart()) != null) {
+                // Closing a media part skips the rest of it
+                part.content().close();
+            }
+            if (location == null) {
+                throw new IllegalArgumentException("The location part is required");
+            }
+            consumed.complete(location);
+        }
+
+        /**
+         * Move to the next media part of the multipart request, reading the location part on the way
+         *
+         * @return The part, or null at the end of the request
+         */
+        private Part nextPart() throws IOException {
+            while (parts.hasNext()) {
+                FileItemInput part = parts.next();
+                String name = part.getFieldName();
+                if (LOCATION_PART.equals(name)) {
+                    location = objectMapper.readValue(
+                            part.getInputStream().readNBytes(MAX_LOCATION_BYTES), LocationRequest.class);
+                    continue;
+                }
+                if (mediaName(name) == null || part.isFormField()) {
+                    // Unknown parts are skipped by the iterator without being read
+                    continue;
+                }
+                String contentType = part.getContentType() != null ? part.getContentType() : defaultContentType(name);
+                return new Part(name, part.getName(), contentType, part.getInputStream());
+            }
+            return null;
+        }
+
+        private final class RelayInputStream extends InputStream {
+
+            private final String boundary;
+            private final Function<LocationRequest, Map<String, String>> trailingFields;
+
+            private InputStream current = InputStream.nullInputStream();
+            private boolean inFilePart;
+            private boolean finished;
+            private long mediaBytes;
+
+            private RelayInputStream(String boundary, Function<LocationRequest, Map<String, String>> trailingFields) {
+                this.boundary = boundary;
+                this.trailingFields = trailingFields;
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int read = read(single, 0, 1);
+                return read == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                lock.lock();
+                try {
+                    while (true) {
+                        if (aborted) {
+                            // The upload is drained or aborted by the request thread, which completes it
+                            throw new IOException("Upload aborted");
+                        }
+                        int read = readCurrent(buffer, offset, length);
+                        if (read > 0) {
+                            if (inFilePart) {
+                                mediaBytes += read;
+                            }
+                            return read;
+                        }
+                        if (!advance()) {
+                            return -1;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                current.close();
+            }
+
+            private int readCurrent(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    return current.read(buffer, offset, length);
+                } catch (IOException | RuntimeException e) {
+                    // Also covers reads of a request that has already been recycled after a timeout
+                    consumed.completeExceptionally(e);
+                    throw e instanceof IOException io ? io : new IOException(e);
+                }
+            }
+
+            /**
+             * Move to the next segment of the AI request body
+             *
+             * @return false at the end of the body
+             */
+            private boolean advance() throws IOException {
+                if (inFilePart) {
+                    inFilePart = false;
+                    current.close();
+                    current = new ByteArrayInputStream(CRLF);
+                    return true;
+                }
+                if (finished) {
+                    return false;
+                }
+
+                Part part;
+                try {
+                    part = nextPart();
+                    if (part == null && location == null) {
+                        throw new IllegalArgumentException("The location part is required");
+                    }
+                } catch (IOException | RuntimeException e) {
+                    consumed.completeExceptionally(e);
+                    throw e instanceof IOException io ? io : new IOException(e);
+                }
+
+                if (part != null) {
+                    String contentType = part.contentType();
+                    InputStream content = part.content();
+                    if (IMAGE_PART.equals(part.fieldName()) && imagePreprocessor.isEnabled()) {
+                        // Decoding needs the whole image, which is at most prompt.upload.max-file-size
+                        try (InputStream original = content) {
+                            ImagePreprocessor.Image image = imagePreprocessor.preprocess(original.readAllBytes(), contentType);
+                            contentType = image.contentType();
+                            content = new ByteArrayInputStream(image.content());
+                        }
+                    }
+                    byte[] header = AiClient.filePartHeader(boundary, mediaName(part.fieldName()), part.fileName(), contentType);
+                    current = new SequenceInputStream(new ByteArrayInputStream(header), content);
+                    inFilePart = true;
+                    log.debug("Relaying {} part to AI server: {}", part.fieldName(), part.fileName());
+                    return true;
+                }
+
+                // The whole upload has been read, close the AI request body with the text fields
+                finished = true;
+                byte[] fields = trailingFields.apply(location).entrySet().stream()
+                        .map(field -> AiClient.fieldPart(boundary, field.getKey(), field.getValue()))
+                        .reduce(new byte[0], PromptUploadRelay::concat);
+                current = new ByteArrayInputStream(concat(fields, AiClient.closingDelimiter(boundary)));
+                uploadSize.record(mediaBytes);
+                consumed.complete(location);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A media part of the upload
+     *
+     * @param fieldName The form field name
+     * @param fileName The file name sent by the client
+     * @param contentType The content type
+     * @param content The part content
+     */
+    private record Part(String fieldName, String fileName, String contentType, InputStream content) {
+    }
+
+    private static String mediaName(String fieldName) {
+        if (fieldName == null) {
+            return null;
+        }
+        return switch (fieldName) {
+            case IMAGE_PART -> "image";
+            case "voice" -> "audio";
+            default -> null;
+        };
+    }
+
+    private static String defaultContentType(String fieldName) {
+        return IMAGE_PART.equals(fieldName) ? "image/jpeg" : "audio/webm";
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
\ No newline at end of file
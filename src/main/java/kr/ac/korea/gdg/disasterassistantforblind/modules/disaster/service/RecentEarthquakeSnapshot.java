@@ -0,0 +1,152 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.mapper.EarthquakeMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.Earthquake;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Snapshot of the most recent earthquakes, maintained by the ingest path.
+ * Holds the top-K earthquakes of the recent window ordered by time and the rendered
+ * earthquake_data prompt, which is built once per snapshot version and shared by all AI calls.
+ */
+@Component
+@Slf4j
+public class RecentEarthquakeSnapshot {
+
+    private static final Comparator<Earthquake> MOST_RECENT_FIRST =
+            Comparator.comparing(Earthquake::getTime, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final EarthquakeMapper earthquakeMapper;
+    private final int limit;
+    private final Duration window;
+
+    private volatile Snapshot snapshot;
+
+    public RecentEarthquakeSnapshot(
+            EarthquakeMapper earthquakeMapper,
+            @Value("${earthquake.recent.limit:3}") int limit,
+            @Value("${earthquake.recent.window:24h}") Duration window) {
+        this.earthquakeMapper = earthquakeMapper;
+        this.limit = limit;
+        this.window = window;
+        this.snapshot = new Snapshot(0, List.of(), render(List.of()));
+    }
+
+    /**
+     * Load the initial snapshot from the database once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        try {
+            List<Earthquake> latest = earthquakeMapper.findLatestEarthquakes(LocalDateTime.now().minus(window), limit);
+            synchronized (this) {
+                publish(latest);
+            }
+            log.info("Loaded {} recent earthquakes into the snapshot", latest.size());
+        } catch (Exception e) {
+            log.error("Error loading recent earthquakes", e);
+        }
+    }
+
+    /**
+     * Merge an inserted or updated earthquake into the snapshot
+     *
+     * @param earthquake The earthquake as stored in the database
+     */
+    public synchronized void onEarthquakeStored(Earthquake earthquake) {
+        if (earthquake == null || earthquake.getId() == null || earthquake.getTime() == null
+                || earthquake.getTime().isBefore(LocalDateTime.now().minus(window))) {
+            return;
+        }
+
+        List<Earthquake> current = snapshot.earthquakes();
+        boolean present = current.stream().anyMatch(e -> earthquake.getId().equals(e.getId()));
+        if (!present && current.size() >= limit
+                && MOST_RECENT_FIRST.compare(earthquake, current.get(current.size() - 1)) >= 0) {
+            // Older than everything kept, the snapshot does not change
+            return;
+        }
+
+        List<Earthquake> merged = new ArrayList<>(current.size() + 1);
+        for (Earthquake existing : current) {
+            if (!earthquake.getId().equals(existing.getId())) {
+                merged.add(existing);
+            }
+        }
+        merged.add(earthquake);
+        merged.sort(MOST_RECENT_FIRST);
+        publish(merged.size() > limit ? merged.subList(0, limit) : merged);
+    }
+
+    /**
+     * Get the rendered earthquake_data prompt for the current snapshot
+     *
+     * @return A text prompt with recent earthquake information
+     */
+    public String getEarthquakeInfoPrompt() {
+        Snapshot current = snapshot;
+        List<Earthquake> earthquakes = current.earthquakes();
+        if (!earthquakes.isEmpty() && isExpired(earthquakes.get(earthquakes.size() - 1))) {
+            current = expireOldEarthquakes();
+        }
+        return current.rendered();
+    }
+
+    /**
+     * @return The version of the current snapshot, incremented on every change
+     */
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    private synchronized Snapshot expireOldEarthquakes() {
+        // Everything newer than an expired entry is already kept, so filtering is enough
+        List<Earthquake> remaining = snapshot.earthquakes().stream()
+                .filter(earthquake -> !isExpired(earthquake))
+                .toList();
+        if (remaining.size() != snapshot.earthquakes().size()) {
+            publish(remaining);
+        }
+        return snapshot;
+    }
+
+    private boolean isExpired(Earthquake earthquake) {
+        return earthquake.getTime() == null || earthquake.getTime().isBefore(LocalDateTime.now().minus(window));
+    }
+
+    private void publish(List<Earthquake> earthquakes) {
+        List<Earthquake> copy = List.copyOf(earthquakes);
+        snapshot = new Snapshot(snapshot.version() + 1, copy, render(copy));
+    }
+
+    private String render(List<Earthquake> earthquakes) {
+        StringBuilder prompt = new StringBuilder();
+
+        if (!earthquakes.isEmpty()) {
+            prompt.append("Recent Earthquakes Information:\n");
+            for (Earthquake earthquake : earthquakes) {
+                prompt.append("- Magnitude: ").append(earthquake.getMagnitude())
+                      .append(", Location: ").append(earthquake.getLocation())
+                      .append(", Time: ").append(earthquake.getTime())
+                      .append(", Depth: ").append(earthquake.getDepth()).append(" km\n");
+            }
+        } else {
+            prompt.append("No recent earthquakes detected.\n");
+        }
+
+        return prompt.toString();
+    }
+
+    private record Snapshot(long version, List<Earthquake> earthquakes, String rendered) {
+    }
+}
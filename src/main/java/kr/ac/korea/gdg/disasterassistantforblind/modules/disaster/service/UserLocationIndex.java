@@ -0,0 +1,266 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.mapper.MedicalInfoMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory grid index of users' last known positions.
+ * The globe is split into fixed-size latitude/longitude cells so that a radius query
+ * only has to look at the cells overlapping the bounding box of the circle.
+ * Positions recorded by other nodes of the cluster are picked up by a periodic incremental refresh.
+ */
+@Component
+@Slf4j
+public class UserLocationIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+    // Re-read window covering clock skew between nodes and updates committed during a refresh
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final MedicalInfoMapper medicalInfoMapper;
+    private final double cellSizeDegrees;
+    private final int rows;
+    private final int columns;
+
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime refreshedAt;
+
+    public UserLocationIndex(
+            MedicalInfoMapper medicalInfoMapper,
+            @Value("${earthquake.impact.cell-size-degrees:1.0}") double cellSizeDegrees) {
+        this.medicalInfoMapper = medicalInfoMapper;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.rows = (int) Math.ceil(180.0 / cellSizeDegrees);
+        this.columns = (int) Math.ceil(360.0 / cellSizeDegrees);
+    }
+
+    /**
+     * Load the last known positions stored in medical_info once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFromDatabase() {
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            List<MedicalInfo> locations = medicalInfoMapper.findAllLocations();
+            for (MedicalInfo location : locations) {
+                update(location.getUserId(), location.getLastLatitude(), location.getLastLongitude());
+            }
+            refreshedAt = startedAt;
+            log.info("Loaded {} user locations into the location index", positions.size());
+        } catch (Exception e) {
+            log.error("Error loading user locations into the location index", e);
+        }
+    }
+
+    /**
+     * Apply the positions updated since the last load or refresh, including those recorded by other nodes
+     */
+    @Scheduled(fixedDelayString = "${earthquake.impact.index-refresh-interval:30000}")
+    public void refreshFromDatabase() {
+        LocalDateTime since = refreshedAt;
+        if (since == null) {
+            // Not loaded yet
+            return;
+        }
+
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            List<MedicalInfo> locations = medicalInfoMapper.findLocationsUpdatedSince(since.minus(REFRESH_OVERLAP));
+            for (MedicalInfo location : locations) {
+                update(location.getUserId(), location.getLastLatitude(), location.getLastLongitude());
+            }
+            refreshedAt = startedAt;
+            log.debug("Refreshed {} user locations in the location index", locations.size());
+        } catch (Exception e) {
+            log.error("Error refreshing user locations in the location index", e);
+        }
+    }
+
+    /**
+     * Record the latest position of a user
+     *
+     * @param userId The user ID
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     */
+    public void update(String userId, Double latitude, Double longitude) {
+        if (userId == null || latitude == null || longitude == null
+                || Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+            return;
+        }
+
+        Position next = new Position(latitude, longitude, cellKey(latitude, longitude));
+        positions.compute(userId, (id, previous) -> {
+            if (previous != null && previous.cell() != next.cell()) {
+                Set<String> previousCell = cells.get(previous.cell());
+                if (previousCell != null) {
+                    previousCell.remove(id);
+                }
+            }
+            cells.computeIfAbsent(next.cell(), key -> ConcurrentHashMap.newKeySet()).add(id);
+            return next;
+        });
+    }
+
+    /**
+     * Forget the position of a user
+     *
+     * @param userId The user ID
+     */
+    public void remove(String userId) {
+        positions.computeIfPresent(userId, (id, previous) -> {
+            Set<String> previousCell = cells.get(previous.cell());
+            if (previousCell != null) {
+                previousCell.remove(id);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Find the users whose last known position lies within the given radius
+     *
+     * @param latitude Latitude of the centre in degrees
+     * @param longitude Longitude of the centre in degrees
+     * @param radiusKm Radius in kilometres
+     * @return IDs of the users inside the circle
+     */
+    public Set<String> findUserIdsWithin(double latitude, double longitude, double radiusKm) {
+        Set<String> result = new HashSet<>();
+        forEachCellWithin(latitude, longitude, radiusKm, (cell, userIds) -> {
+            for (String userId : userIds) {
+                Position position = positions.get(userId);
+                if (position != null && position.cell() == cell
+                        && distanceKm(latitude, longitude, position.latitude(), position.longitude()) <= radiusKm) {
+                    result.add(userId);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Find the cells holding at least one user whose last known position lies within the given radius
+     *
+     * @param latitude Latitude of the centre in degrees
+     * @param longitude Longitude of the centre in degrees
+     * @param radiusKm Radius in kilometres
+     * @return IDs of the cells reaching users inside the circle
+     */
+    public Set<Long> findCellIdsWithin(double latitude, double longitude, double radiusKm) {
+        Set<Long> result = new HashSet<>();
+        forEachCellWithin(latitude, longitude, radiusKm, (cell, userIds) -> {
+            for (String userId : userIds) {
+                Position position = positions.get(userId);
+                if (position != null && position.cell() == cell
+                        && distanceKm(latitude, longitude, position.latitude(), position.longitude()) <= radiusKm) {
+                    result.add(cell);
+                    return;
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get the ID of the grid cell containing a position
+     *
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return The cell ID
+     */
+    public long cellId(double latitude, double longitude) {
+        return cellKey(latitude, longitude);
+    }
+
+    /**
+     * @return The number of users with a known position
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    private void forEachCellWithin(double latitude, double longitude, double radiusKm, CellVisitor visitor) {
+        double latitudeDelta = radiusKm / KM_PER_DEGREE;
+        double minLatitude = Math.max(-90.0, latitude - latitudeDelta);
+        double maxLatitude = Math.min(90.0, latitude + latitudeDelta);
+
+        // Longitude degrees shrink towards the poles, so widen the box using the latitude closest to a pole
+        double widestLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+        double cosine = Math.cos(Math.toRadians(widestLatitude));
+        boolean allColumns = cosine < 1e-6 || latitudeDelta / cosine >= 180.0;
+        double longitudeDelta = allColumns ? 180.0 : latitudeDelta / cosine;
+
+        int firstRow = row(minLatitude);
+        int lastRow = row(maxLatitude);
+        int firstColumn = allColumns ? 0 : column(longitude - longitudeDelta);
+        int columnSpan = allColumns ? columns : column(longitude + longitudeDelta) - firstColumn;
+        if (columnSpan < 0) {
+            // The box crosses the antimeridian
+            columnSpan += columns;
+        }
+        columnSpan = Math.min(columnSpan, columns - 1);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int offset = 0; offset <= columnSpan; offset++) {
+                long cell = (long) row * columns + (firstColumn + offset) % columns;
+                Set<String> userIds = cells.get(cell);
+                if (userIds != null && !userIds.isEmpty()) {
+                    visitor.visit(cell, userIds);
+                }
+            }
+        }
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return (long) row(latitude) * columns + column(longitude);
+    }
+
+    private int row(double latitude) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90.0) / cellSizeDegrees)));
+    }
+
+    private int column(double longitude) {
+        double normalized = ((longitude + 180.0) % 360.0 + 360.0) % 360.0;
+        return Math.min(columns - 1, (int) Math.floor(normalized / cellSizeDegrees));
+    }
+
+    /**
+     * Great-circle distance between two points using the haversine formula
+     *
+     * @return Distance in kilometres
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+                * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    @FunctionalInterface
+    private interface CellVisitor {
+        void visit(long cell, Set<String> userIds);
+    }
+
+    private record Position(double latitude, double longitude, long cell) {
+    }
+}
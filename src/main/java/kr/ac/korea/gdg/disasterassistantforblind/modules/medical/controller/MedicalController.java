@@ -8,7 +8,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
-import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service.MedicalInfoService;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.service.UserService;
 import org.springframework.http.HttpStatus;
@@ -57,9 +56,8 @@ public class MedicalController {
         }
 
         try {
-            // Get the authenticated user
-            User user = userService.getUserById(authentication.getName());
-            String userId = user.getId();
+            // The authenticated user's ID is the token subject, no user lookup is needed
+            String userId = authentication.getName();
 
             // Get existing medical info or create new one
             MedicalInfo medicalInfo = medicalInfoService.getMedicalInfoByUserId(userId);
@@ -11,5 +11,13 @@ public interface MedicalInfoMapper {
 
     MedicalInfo findByUserId(String userId);
 
+    List<MedicalInfo> findAllLocations();
+
+    List<MedicalInfo> findLocationsUpdatedSince(LocalDateTime since);
+
+    void insert(MedicalInfo medicalInfo);
+
     void update(MedicalInfo medicalInfo);
+
+    void upsertLocation(String userId, Double latitude, Double longitude, LocalDateTime updateTime);
 }
\ No newline at end of file
@@ -6,11 +6,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 /**
  * MedicalInfo entity representing a blind person's medical information
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MedicalInfo {
@@ -22,6 +24,11 @@ public class MedicalInfo {
     private Double weight; // in kg
     private String bloodType;
     private String allergies;
+
+    // Last known position, reported through /api/disaster/prompt
+    private Double lastLatitude;
+    private Double lastLongitude;
+    private LocalDateTime lastLocationUpdate;
     
     // Reference to the user (not stored in database)
     private User user;
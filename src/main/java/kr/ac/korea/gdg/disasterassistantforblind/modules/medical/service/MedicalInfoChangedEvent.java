@@ -0,0 +1,12 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
+
+/**
+ * Published when a user's medical profile is created or updated
+ *
+ * @param userId The user ID
+ * @param medicalInfo The saved medical information
+ */
+public record MedicalInfoChangedEvent(String userId, MedicalInfo medicalInfo) {
+}
@@ -1,11 +1,17 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.medical.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.CacheInvalidationChannel;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.ReadThroughCache;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.mapper.MedicalInfoMapper;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.medical.model.MedicalInfo;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -13,18 +19,31 @@ import java.util.List;
 public class MedicalInfoService {
 
     private final MedicalInfoMapper medicalInfoMapper;
+    private final ReadThroughCache<MedicalInfo> medicalInfoCache;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public MedicalInfoService(MedicalInfoMapper medicalInfoMapper) {
+    public MedicalInfoService(
+            MedicalInfoMapper medicalInfoMapper,
+            MeterRegistry meterRegistry,
+            CacheInvalidationChannel cacheInvalidationChannel,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${cache.medical-info.max-size:10000}") long cacheMaxSize,
+            @Value("${cache.medical-info.ttl:10m}") Duration cacheTtl) {
         this.medicalInfoMapper = medicalInfoMapper;
+        this.medicalInfoCache = new ReadThroughCache<>("medical-info", cacheMaxSize, cacheTtl,
+                medicalInfo -> medicalInfo.toBuilder().build(), meterRegistry, cacheInvalidationChannel);
+        this.eventPublisher = eventPublisher;
     }
 
     public MedicalInfo getMedicalInfoByUserId(String userId) {
-        return medicalInfoMapper.findByUserId(userId);
+        return medicalInfoCache.get(userId, medicalInfoMapper::findByUserId);
     }
 
     @Transactional
     public void updateMedicalInfo(MedicalInfo medicalInfo) {
         medicalInfoMapper.update(medicalInfo);
+        medicalInfoCache.invalidate(medicalInfo.getUserId());
+        eventPublisher.publishEvent(new MedicalInfoChangedEvent(medicalInfo.getUserId(), medicalInfo));
     }
 
     /**
@@ -40,6 +59,9 @@ public class MedicalInfoService {
         if (existingMedicalInfo == null) {
             // Create new medical info
             medicalInfo.setUserId(userId);
+            medicalInfoMapper.insert(medicalInfo);
+            medicalInfoCache.invalidate(userId);
+            eventPublisher.publishEvent(new MedicalInfoChangedEvent(userId, medicalInfo));
         } else {
             // Update existing medical info
             medicalInfo.setId(existingMedicalInfo.getId());
@@ -47,4 +69,19 @@ public class MedicalInfoService {
             updateMedicalInfo(medicalInfo);
         }
     }
+
+    /**
+     * Store the last known location of a user
+     *
+     * @param userId The user ID
+     * @param latitude Current latitude
+     * @param longitude Current longitude
+     */
+    @Transactional
+    public void updateLocation(String userId, Double latitude, Double longitude) {
+        // Creates a row that only holds the location when the user has no medical info yet,
+        // the unique user_id key keeps concurrent calls from creating two
+        medicalInfoMapper.upsertLocation(userId, latitude, longitude, LocalDateTime.now());
+        medicalInfoCache.invalidate(userId);
+    }
 }
\ No newline at end of file
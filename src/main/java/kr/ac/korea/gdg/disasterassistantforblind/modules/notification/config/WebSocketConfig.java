@@ -1,5 +1,7 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -8,13 +10,49 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 
 @Configuration
 @EnableWebSocketMessageBroker
+@Slf4j
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public enum BrokerMode {
+        /** In-memory broker, delivers only to sessions connected to this node */
+        SIMPLE,
+        /** External STOMP broker shared by all nodes, delivers to whichever node holds the session */
+        RELAY
+    }
+
+    @Value("${notification.broker.mode:simple}")
+    private BrokerMode brokerMode;
+
+    @Value("${notification.broker.relay.host:127.0.0.1}")
+    private String relayHost;
+
+    @Value("${notification.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${notification.broker.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${notification.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple memory-based message broker to send messages to clients
-        // on destinations prefixed with /topic
-        config.enableSimpleBroker("/topic");
+        if (brokerMode == BrokerMode.RELAY) {
+            // Every node relays its sessions' subscriptions to the external broker, so a message
+            // published on any node reaches the user and cell topics subscribed on all nodes
+            config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode);
+            log.info("Using STOMP broker relay at {}:{}", relayHost, relayPort);
+        } else {
+            // Enable a simple memory-based message broker to send messages to clients
+            // on destinations prefixed with /topic
+            config.enableSimpleBroker("/topic");
+        }
         
         // Set prefix for messages from clients to server
         config.setApplicationDestinationPrefixes("/app");
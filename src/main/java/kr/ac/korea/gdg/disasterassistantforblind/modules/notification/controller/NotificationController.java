@@ -0,0 +1,95 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service.NotificationOutbox;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller for replaying and acknowledging user notifications
+ */
+@RestController
+@RequestMapping("/api/notifications")
+@Tag(name = "Notifications", description = "Notification replay and acknowledgement API")
+public class NotificationController {
+
+    private final NotificationOutbox notificationOutbox;
+
+    public NotificationController(NotificationOutbox notificationOutbox) {
+        this.notificationOutbox = notificationOutbox;
+    }
+
+    /**
+     * Replay the notifications the authenticated user missed
+     */
+    @Operation(summary = "Replay notifications", description = "Get the notifications of the currently authenticated user after a sequence number, in order")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Notifications after the sequence number",
+                    content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "401", description = "Not authenticated",
+                    content = @Content)
+    })
+    @GetMapping("/replay")
+    public ResponseEntity<String> replay(
+            @Parameter(hidden = true) Authentication authentication,
+            @Parameter(description = "Last sequence number received by the client")
+            @RequestParam(defaultValue = "0") long after) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // Payloads are stored as JSON, they are joined without being parsed again
+        List<String> payloads = notificationOutbox.replay(authentication.getName(), after);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("[" + String.join(",", payloads) + "]");
+    }
+
+    /**
+     * Acknowledge the notifications the authenticated user received
+     */
+    @Operation(summary = "Acknowledge notifications", description = "Acknowledge every notification up to a sequence number for the currently authenticated user")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Notifications acknowledged",
+                    content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "400", description = "Invalid input",
+                    content = @Content),
+        @ApiResponse(responseCode = "401", description = "Not authenticated",
+                    content = @Content)
+    })
+    @PostMapping("/ack")
+    public ResponseEntity<?> acknowledge(
+            @Parameter(hidden = true) Authentication authentication,
+            @Parameter(description = "Highest sequence number received", required = true)
+            @RequestBody Map<String, Object> request) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Object seq = request.get("seq");
+        if (!(seq instanceof Number number)) {
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "seq is required");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        notificationOutbox.acknowledge(authentication.getName(), number.longValue());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Notifications acknowledged");
+        response.put("seq", number.longValue());
+        return ResponseEntity.ok(response);
+    }
+}
@@ -0,0 +1,23 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.mapper;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.model.OutboxNotification;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface NotificationOutboxMapper {
+
+    void insert(OutboxNotification notification);
+
+    Long findMaxSeq(String userId);
+
+    List<OutboxNotification> findMaxSeqs(List<String> userIds);
+
+    List<OutboxNotification> findAfter(String userId, long afterSeq, int limit);
+
+    void acknowledge(String userId, long seq, LocalDateTime ackedAt);
+
+    int deleteCreatedBefore(LocalDateTime before);
+}
\ No newline at end of file
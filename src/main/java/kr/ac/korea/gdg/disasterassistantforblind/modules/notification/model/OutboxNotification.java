@@ -0,0 +1,24 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notification held in the outbox for replay
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxNotification {
+    private String userId;
+    private Long seq; // per-user sequence number, gap-free and increasing
+    private String type;
+    private String payload; // the notification as sent, in JSON
+    private LocalDateTime createdAt;
+    private LocalDateTime ackedAt;
+}
\ No newline at end of file
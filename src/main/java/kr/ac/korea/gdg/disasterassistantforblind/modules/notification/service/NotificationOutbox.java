@@ -0,0 +1,361 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.mapper.NotificationOutboxMapper;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.notification.model.OutboxNotification;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Outbox of user notifications.
+ * Every notification gets the next per-user sequence number and is kept in a bounded ring buffer of the
+ * user's recent notifications, then persisted asynchronously in batches. A client that reconnects sends the
+ * last sequence number it has seen and gets everything after it, from memory when the ring buffer still
+ * covers the gap and no other node has notified the user since, and from the database otherwise.
+ * A batch that cannot be written is retried row by row, and rows that still fail are kept, ahead of newer ones,
+ * until a later flush writes them, so the table never skips a sequence number the users were sent.
+ */
+@Component
+@Slf4j
+public class NotificationOutbox {
+
+    private static final int FLUSH_BATCH_SIZE = 1000;
+
+    private final NotificationOutboxMapper notificationOutboxMapper;
+    private final SqlSessionFactory sqlSessionFactory;
+    private final int bufferSize;
+    private final int replayLimit;
+    private final Duration retention;
+
+    private final Cache<String, UserStream> streams;
+    private final BlockingQueue<OutboxNotification> pending;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Notifications that could not be written, oldest first, guarded by the flush lock
+    private final Deque<OutboxNotification> retry = new ArrayDeque<>();
+    private volatile int retrying;
+
+    private final Counter persistedCounter;
+    private final Counter duplicateCounter;
+    private final Counter droppedCounter;
+    private final Counter ackedCounter;
+    private final Timer memoryReplayTimer;
+    private final Timer databaseReplayTimer;
+    private final Timer deliveryLatencyTimer;
+
+    public NotificationOutbox(
+            NotificationOutboxMapper notificationOutboxMapper,
+            SqlSessionFactory sqlSessionFactory,
+            MeterRegistry meterRegistry,
+            @Value("${notification.outbox.buffer-size:64}") int bufferSize,
+            @Value("${notification.outbox.max-active-users:100000}") long maxActiveUsers,
+            @Value("${notification.outbox.idle-timeout:1h}") Duration idleTimeout,
+            @Value("${notification.outbox.pending-capacity:100000}") int pendingCapacity,
+            @Value("${notification.outbox.replay-limit:500}") int replayLimit,
+            @Value("${notification.outbox.retention:7d}") Duration retention) {
+        this.notificationOutboxMapper = notificationOutboxMapper;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.bufferSize = bufferSize;
+        this.replayLimit = replayLimit;
+        this.retention = retention;
+        this.streams = Caffeine.newBuilder()
+                .maximumSize(maxActiveUsers)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.pending = new LinkedBlockingQueue<>(pendingCapacity);
+
+        this.persistedCounter = Counter.builder("notification.outbox.persisted")
+                .description("Notifications written to the outbox table")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("notification.outbox.duplicates")
+                .description("Notifications whose user and sequence number were already in the outbox table")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("notification.outbox.dropped")
+                .description("Notifications sent but not persisted because the outbox was full while the database failed")
+                .register(meterRegistry);
+        this.ackedCounter = Counter.builder("notification.acked")
+                .description("Notification delivery acknowledgements")
+                .register(meterRegistry);
+        this.memoryReplayTimer = Timer.builder("notification.replay")
+                .description("Time to serve a replay request")
+                .tag("source", "memory")
+                .register(meterRegistry);
+        this.databaseReplayTimer = Timer.builder("notification.replay")
+                .description("Time to serve a replay request")
+                .tag("source", "database")
+                .register(meterRegistry);
+        this.deliveryLatencyTimer = Timer.builder("notification.delivery.latency")
+                .description("Time from creating a notification to its delivery acknowledgement")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("notification.outbox.pending", pending, BlockingQueue::size)
+                .description("Notifications waiting to be persisted")
+                .register(meterRegistry);
+        Gauge.builder("notification.outbox.retrying", this, outbox -> outbox.retrying)
+                .description("Notifications that failed to persist and wait for the next flush")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Append a notification for a user
+     *
+     * @param userId The user ID
+     * @param type The notification type
+     * @param payloadForSeq Renders the JSON payload for the assigned sequence number
+     * @return The notification with its sequence number
+     */
+    public OutboxNotification append(String userId, String type, LongFunction<String> payloadForSeq) {
+        UserStream stream = streams.get(userId, this::loadStream);
+
+        OutboxNotification notification;
+        synchronized (stream) {
+            long seq = ++stream.lastSeq;
+            notification = OutboxNotification.builder()
+                    .userId(userId)
+                    .seq(seq)
+                    .type(type)
+                    .payload(payloadForSeq.apply(seq))
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            if (stream.buffer.size() >= bufferSize) {
+                stream.buffer.pollFirst();
+            }
+            stream.buffer.addLast(notification);
+        }
+
+        if (!pending.offer(notification)) {
+            // Persistence is falling behind, write the backlog from this thread
+            flush();
+            if (!pending.offer(notification)) {
+                // Still full, the database is failing; the notification is sent and kept in memory only
+                droppedCounter.increment();
+                log.error("Notification outbox full, notification {} of user {} is not persisted", notification.getSeq(), userId);
+            }
+        }
+        return notification;
+    }
+
+    /**
+     * Load the sequence numbers of many users with one query, ahead of a fan-out.
+     * A cached sequence number behind the table, because another node notified the user since, is moved forward in
+     * place, so an append holding the stream keeps numbering from it.
+     *
+     * @param userIds The user IDs
+     */
+    public void preload(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        flush();
+        Map<String, Long> lastSeqs = notificationOutboxMapper.findMaxSeqs(new ArrayList<>(userIds)).stream()
+                .collect(Collectors.toMap(OutboxNotification::getUserId, OutboxNotification::getSeq));
+        for (String userId : userIds) {
+            long lastSeq = lastSeqs.getOrDefault(userId, 0L);
+            UserStream stream = streams.asMap().computeIfAbsent(userId, id -> new UserStream(lastSeq));
+            synchronized (stream) {
+                if (stream.lastSeq < lastSeq) {
+                    // The buffer no longer ends at the last sequence number, replays must read the table
+                    stream.lastSeq = lastSeq;
+                    stream.buffer.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the notifications of a user after a sequence number
+     *
+     * @param userId The user ID
+     * @param afterSeq The last sequence number the client has seen
+     * @return The JSON payloads in sequence order, at most {@code notification.outbox.replay-limit}
+     */
+    public List<String> replay(String userId, long afterSeq) {
+        long startedAt = System.nanoTime();
+
+        UserStream stream = streams.getIfPresent(userId);
+        if (stream != null) {
+            // The ring buffer only holds what this node appended, the table also has what the other nodes appended
+            Long persistedSeq = notificationOutboxMapper.findMaxSeq(userId);
+            synchronized (stream) {
+                if (persistedSeq != null && stream.lastSeq < persistedSeq) {
+                    // The buffer no longer ends at the last sequence number, replays must read the table
+                    stream.lastSeq = persistedSeq;
+                    stream.buffer.clear();
+                }
+                OutboxNotification oldest = stream.buffer.peekFirst();
+                if (afterSeq >= stream.lastSeq || (oldest != null && oldest.getSeq() <= afterSeq + 1)) {
+                    List<String> payloads = stream.buffer.stream()
+                            .filter(notification -> notification.getSeq() > afterSeq)
+                            .limit(replayLimit)
+                            .map(OutboxNotification::getPayload)
+                            .toList();
+                    memoryReplayTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    return payloads;
+                }
+            }
+        }
+
+        // The gap is older than the ring buffer or was notified by another node, make sure everything is persisted
+        // before reading it back
+        flush();
+        List<String> payloads = notificationOutboxMapper.findAfter(userId, afterSeq, replayLimit).stream()
+                .map(OutboxNotification::getPayload)
+                .toList();
+        databaseReplayTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return payloads;
+    }
+
+    /**
+     * Record that a client received every notification up to a sequence number
+     *
+     * @param userId The user ID
+     * @param seq The highest sequence number received
+     */
+    public void acknowledge(String userId, long seq) {
+        LocalDateTime now = LocalDateTime.now();
+
+        UserStream stream = streams.getIfPresent(userId);
+        if (stream != null) {
+            synchronized (stream) {
+                for (OutboxNotification notification : stream.buffer) {
+                    if (notification.getSeq() <= seq && notification.getAckedAt() == null) {
+                        notification.setAckedAt(now);
+                        deliveryLatencyTimer.record(Duration.between(notification.getCreatedAt(), now));
+                    }
+                }
+            }
+        }
+        ackedCounter.increment();
+
+        flush();
+        notificationOutboxMapper.acknowledge(userId, seq, now);
+    }
+
+    /**
+     * Persist the notifications that failed before, then the pending ones, in batches.
+     * Stops at the first batch with rows that cannot be written, which are retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${notification.outbox.flush-interval:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<OutboxNotification> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+            while (true) {
+                while (batch.size() < FLUSH_BATCH_SIZE && !retry.isEmpty()) {
+                    batch.add(retry.pollFirst());
+                }
+                if (retry.isEmpty()) {
+                    pending.drainTo(batch, FLUSH_BATCH_SIZE - batch.size());
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                List<OutboxNotification> failed = persist(batch);
+                if (!failed.isEmpty()) {
+                    for (int i = failed.size() - 1; i >= 0; i--) {
+                        retry.addFirst(failed.get(i));
+                    }
+                    return;
+                }
+                batch.clear();
+            }
+        } finally {
+            retrying = retry.size();
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Delete notifications older than the retention period
+     */
+    @Scheduled(cron = "${notification.outbox.cleanup-cron:0 30 4 * * *}")
+    public void deleteExpired() {
+        int deleted = notificationOutboxMapper.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        log.info("Deleted {} expired notifications from the outbox", deleted);
+    }
+
+    /**
+     * Write a batch with one batched statement, or row by row if the batch fails
+     *
+     * @return The notifications that could not be written, in order
+     */
+    private List<OutboxNotification> persist(List<OutboxNotification> batch) {
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            NotificationOutboxMapper batchMapper = session.getMapper(NotificationOutboxMapper.class);
+            for (OutboxNotification notification : batch) {
+                batchMapper.insert(notification);
+            }
+            session.flushStatements();
+            session.commit();
+            persistedCounter.increment(batch.size());
+            return List.of();
+        } catch (Exception e) {
+            log.warn("Error persisting {} notifications as a batch, retrying row by row", batch.size(), e);
+        }
+
+        List<OutboxNotification> failed = new ArrayList<>();
+        for (OutboxNotification notification : batch) {
+            if (!failed.isEmpty()) {
+                // Keep the rows after a failure in order behind it
+                failed.add(notification);
+                continue;
+            }
+            try {
+                notificationOutboxMapper.insert(notification);
+                persistedCounter.increment();
+            } catch (DuplicateKeyException e) {
+                // Already written, by a batch whose commit was reported as failed or by another node
+                duplicateCounter.increment();
+                log.warn("Notification {} of user {} is already in the outbox", notification.getSeq(), notification.getUserId());
+            } catch (Exception e) {
+                log.error("Error persisting notification {} of user {}, retrying on the next flush",
+                        notification.getSeq(), notification.getUserId(), e);
+                failed.add(notification);
+            }
+        }
+        return failed;
+    }
+
+    private UserStream loadStream(String userId) {
+        // Pending notifications of the user must be counted before reading the last sequence number
+        flush();
+        Long lastSeq = notificationOutboxMapper.findMaxSeq(userId);
+        return new UserStream(lastSeq != null ? lastSeq : 0L);
+    }
+
+    private static final class UserStream {
+        private long lastSeq;
+        private final Deque<OutboxNotification> buffer = new ArrayDeque<>();
+
+        private UserStream(long lastSeq) {
+            this.lastSeq = lastSeq;
+        }
+    }
+}
\ No newline at end of file
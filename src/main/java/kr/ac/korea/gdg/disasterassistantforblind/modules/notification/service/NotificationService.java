@@ -1,43 +1,140 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.notification.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
 
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
 @Slf4j
 public class NotificationService {
 
+    private static final String CELL_TOPIC_PREFIX = "/topic/cell/";
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final NotificationOutbox notificationOutbox;
+
+    // Time to hand a message to the broker, local delivery for the simple broker or the relay connection
+    private final Timer userPublishTimer;
+    private final Timer cellPublishTimer;
 
-    public NotificationService(SimpMessagingTemplate messagingTemplate) {
+    public NotificationService(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+                               NotificationOutbox notificationOutbox, MeterRegistry meterRegistry) {
         this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.notificationOutbox = notificationOutbox;
+        this.userPublishTimer = Timer.builder("notification.publish")
+                .description("Time to publish a notification to the message broker")
+                .tag("destination", "user")
+                .register(meterRegistry);
+        this.cellPublishTimer = Timer.builder("notification.publish")
+                .description("Time to publish a notification to the message broker")
+                .tag("destination", "cell")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the topic that users located in a grid cell subscribe to
+     *
+     * @param cellId The cell ID
+     * @return The topic destination
+     */
+    public static String cellTopic(long cellId) {
+        return CELL_TOPIC_PREFIX + cellId;
+    }
+
+    /**
+     * Broadcast a notification to every user located in the given cells.
+     * The notification is serialized once and published once per cell, whatever the number of users.
+     *
+     * @param cellIds The cells to broadcast to
+     * @param notification The notification payload
+     */
+    public void broadcastToCells(Collection<Long> cellIds, Map<String, Object> notification) {
+        if (cellIds.isEmpty()) {
+            return;
+        }
+
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(notification);
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing cell notification: {}", notification, e);
+            return;
+        }
+
+        for (Long cellId : cellIds) {
+            try {
+                cellPublishTimer.record(() -> sendJson(cellTopic(cellId), payload));
+            } catch (Exception e) {
+                log.error("Error broadcasting notification to cell: {}", cellId, e);
+            }
+        }
+        log.info("Broadcast {} notification to {} cells", notification.get("type"), cellIds.size());
+    }
+
+    /**
+     * Load the notification sequence numbers of a page of recipients ahead of a fan-out
+     *
+     * @param users The recipients
+     */
+    public void preloadRecipients(List<User> users) {
+        notificationOutbox.preload(users.stream().map(User::getId).toList());
     }
 
     /**
-     * Send a notification to a specific user
+     * Send a notification of a given type to a specific user.
+     * The notification is appended to the user's outbox first, so a client that missed it can replay it by sequence number.
      *
-     * @param user The user to send the notification to
-     * @param message The message to send
+     * @param userId The ID of the user to send the notification to
+     * @param type The notification type
+     * @param content The notification fields, type, timestamp and seq are added to them
      */
-    public void sendNotification(User user, String message) {
+    public void sendNotification(String userId, String type, Map<String, Object> content) {
         try {
-            String destination = "/topic/user/" + user.getId();
-            
-            Map<String, Object> notification = new HashMap<>();
-            notification.put("type", "DISASTER_GUIDANCE");
-            notification.put("message", message);
+            String destination = "/topic/user/" + userId;
+
+            Map<String, Object> notification = new HashMap<>(content);
+            notification.put("type", type);
             notification.put("timestamp", LocalDateTime.now().toString());
-            
-            log.info("Sending notification to user {}: {}", user.getId(), message);
-            messagingTemplate.convertAndSend(destination, notification);
+
+            String payload = notificationOutbox.append(userId, type, seq -> {
+                notification.put("seq", seq);
+                try {
+                    return objectMapper.writeValueAsString(notification);
+                } catch (JsonProcessingException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).getPayload();
+
+            log.info("Sending {} notification to user {}: {}", type, userId, content.get("message"));
+            userPublishTimer.record(() -> sendJson(destination, payload.getBytes(StandardCharsets.UTF_8)));
         } catch (Exception e) {
-            log.error("Error sending notification to user: {}", user.getId(), e);
+            log.error("Error sending notification to user: {}", userId, e);
         }
     }
+
+    private void sendJson(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
 }
\ No newline at end of file
@@ -13,9 +13,15 @@ public interface UserMapper {
 
     List<User> findAll();
 
+    List<User> findLeanWithMedicalInfoByIds(List<String> ids);
+
     void insert(User user);
 
     void update(User user);
 
     User findByIdWithMedicalInfo(String id);
+
+    Long findProfileVersion(String id);
+
+    void incrementProfileVersion(String id);
 }
\ No newline at end of file
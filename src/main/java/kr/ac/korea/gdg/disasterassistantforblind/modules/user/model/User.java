@@ -12,7 +12,7 @@ import java.time.LocalDateTime;
  * User entity representing a blind person's authentication information
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class User {
@@ -22,6 +22,8 @@ public class User {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private Boolean enabled;
+    // Bumped whenever profile fields carried in tokens change
+    private Long profileVersion;
 
     // Reference to medical information (not stored in database)
     private MedicalInfo medicalInfo;
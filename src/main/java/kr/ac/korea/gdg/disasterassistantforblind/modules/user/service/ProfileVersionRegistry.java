@@ -0,0 +1,53 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.user.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.CacheInvalidationChannel;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.ReadThroughCache;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.user.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Current profile version of each user, cached in memory.
+ * The version is bumped whenever profile fields carried in tokens change, which invalidates the profile claims
+ * of every token issued before.
+ */
+@Component
+public class ProfileVersionRegistry {
+
+    private final UserMapper userMapper;
+    private final ReadThroughCache<Long> versionCache;
+
+    public ProfileVersionRegistry(
+            UserMapper userMapper,
+            MeterRegistry meterRegistry,
+            CacheInvalidationChannel cacheInvalidationChannel,
+            @Value("${cache.profile-versions.max-size:100000}") long cacheMaxSize,
+            @Value("${cache.profile-versions.ttl:1h}") Duration cacheTtl) {
+        this.userMapper = userMapper;
+        this.versionCache = new ReadThroughCache<>("profile-versions", cacheMaxSize, cacheTtl,
+                version -> version, meterRegistry, cacheInvalidationChannel);
+    }
+
+    /**
+     * Get the current profile version of a user
+     *
+     * @param userId The user ID
+     * @return The profile version, or null if the user does not exist
+     */
+    public Long getVersion(String userId) {
+        return versionCache.get(userId, userMapper::findProfileVersion);
+    }
+
+    /**
+     * Bump the profile version of a user
+     *
+     * @param userId The user ID
+     */
+    public void bump(String userId) {
+        userMapper.incrementProfileVersion(userId);
+        versionCache.invalidate(userId);
+    }
+}
\ No newline at end of file
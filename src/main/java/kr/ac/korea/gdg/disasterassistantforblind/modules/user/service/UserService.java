@@ -1,7 +1,13 @@
 package kr.ac.korea.gdg.disasterassistantforblind.modules.user.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.auth.security.JwtUserPrincipal;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.CacheInvalidationChannel;
+import kr.ac.korea.gdg.disasterassistantforblind.modules.common.cache.ReadThroughCache;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.mapper.UserMapper;
 import kr.ac.korea.gdg.disasterassistantforblind.modules.user.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -10,24 +16,42 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class UserService implements UserDetailsService {
 
+    private static final int USER_PAGE_SIZE = 1000;
+
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
-
-    public UserService(UserMapper userMapper, PasswordEncoder passwordEncoder) {
+    private final ReadThroughCache<User> userCache;
+    private final ProfileVersionRegistry profileVersionRegistry;
+
+    public UserService(
+            UserMapper userMapper,
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            CacheInvalidationChannel cacheInvalidationChannel,
+            ProfileVersionRegistry profileVersionRegistry,
+            @Value("${cache.users.max-size:10000}") long cacheMaxSize,
+            @Value("${cache.users.ttl:10m}") Duration cacheTtl) {
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
+        this.userCache = new ReadThroughCache<>("users", cacheMaxSize, cacheTtl,
+                user -> user.toBuilder().build(), meterRegistry, cacheInvalidationChannel);
+        this.profileVersionRegistry = profileVersionRegistry;
     }
 
     @Override
     public UserDetails loadUserByUsername(String id) throws UsernameNotFoundException {
-        User user = userMapper.findById(id);
+        User user = getUserById(id);
 
         if (user == null) {
             throw new UsernameNotFoundException("User not found with id: " + id);
@@ -63,6 +87,7 @@ public class UserService implements UserDetailsService {
 
         // Save user
         userMapper.insert(user);
+        userCache.invalidate(user.getId());
 
         return user;
     }
@@ -71,8 +96,47 @@ public class UserService implements UserDetailsService {
         return userMapper.findAll();
     }
 
+    /**
+     * Stream the users with the given IDs page by page, in ID order.
+     * Each page is one joined query loading the ID, name and the medical fields used by the guidance prompt,
+     * and is handed over as soon as it is read.
+     *
+     * @param ids The user IDs
+     * @param pageConsumer Called with each page of users that exist
+     */
+    public void forEachUserPage(Collection<String> ids, Consumer<List<User>> pageConsumer) {
+        List<String> sortedIds = new ArrayList<>(ids);
+        Collections.sort(sortedIds);
+        for (int from = 0; from < sortedIds.size(); from += USER_PAGE_SIZE) {
+            int to = Math.min(from + USER_PAGE_SIZE, sortedIds.size());
+            List<User> page = userMapper.findLeanWithMedicalInfoByIds(sortedIds.subList(from, to));
+            if (!page.isEmpty()) {
+                pageConsumer.accept(page);
+            }
+        }
+    }
+
     public User getUserById(String id) {
-        return userMapper.findById(id);
+        return userCache.get(id, userMapper::findById);
+    }
+
+    /**
+     * Get the authenticated user, served from the token's profile claims while they are current.
+     * Medical information is not in the token, it is read through the medical info cache when needed.
+     *
+     * @param authentication The authentication of the request
+     * @return The user, without its medical information
+     */
+    public User getAuthenticatedUser(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof JwtUserPrincipal principal && principal.hasProfileClaims()
+                && principal.getProfileVersion().equals(profileVersionRegistry.getVersion(principal.getUsername()))) {
+            return User.builder()
+                    .id(principal.getUsername())
+                    .name(principal.getDisplayName())
+                    .profileVersion(principal.getProfileVersion())
+                    .build();
+        }
+        return getUserById(authentication.getName());
     }
 
     public User getUserByIdWithMedicalInfo(String id) {
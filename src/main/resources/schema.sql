@@ -5,7 +5,8 @@ CREATE TABLE IF NOT EXISTS users (
     name VARCHAR(255) NOT NULL,
     created_at DATETIME NOT NULL,
     updated_at DATETIME NOT NULL,
-    enabled BOOLEAN NOT NULL DEFAULT TRUE
+    enabled BOOLEAN NOT NULL DEFAULT TRUE,
+    profile_version BIGINT NOT NULL DEFAULT 0
 );
 
 -- Medical information table
@@ -16,11 +17,14 @@ CREATE TABLE IF NOT EXISTS medical_info (
     height DOUBLE,
     weight DOUBLE,
     blood_type VARCHAR(10),
-    allergies TEXT
+    allergies TEXT,
+    last_latitude DOUBLE,
+    last_longitude DOUBLE,
+    last_location_update DATETIME
 );
 
--- Index for faster user_id lookups
-CREATE INDEX idx_medical_info_user_id ON medical_info(user_id);
+-- One medical info row per user, also used for user_id lookups
+CREATE UNIQUE INDEX idx_medical_info_user_id ON medical_info(user_id);
 
 -- Earthquakes table
 CREATE TABLE IF NOT EXISTS earthquakes (
@@ -32,8 +36,108 @@ CREATE TABLE IF NOT EXISTS earthquakes (
     depth DOUBLE,
     location VARCHAR(255),
     active BOOLEAN NOT NULL DEFAULT TRUE,
+    updated BIGINT,
     created_at DATETIME NOT NULL
 );
 
 -- Index for faster time lookups
 CREATE INDEX idx_earthquakes_time ON earthquakes(time);
+
+-- Earthquake events that have already been processed, keyed by USGS event id
+CREATE TABLE IF NOT EXISTS processed_events (
+    event_id VARCHAR(255) PRIMARY KEY,
+    updated BIGINT,
+    alerted_magnitude DOUBLE,
+    alerted_latitude DOUBLE,
+    alerted_longitude DOUBLE,
+    alerted_at DATETIME,
+    processed_at DATETIME NOT NULL
+);
+
+-- Index for deleting events processed before the retention period
+CREATE INDEX idx_processed_events_processed_at ON processed_events(processed_at);
+
+-- Ingestion cursors, the highest USGS "updated" timestamp (epoch millis) ingested per feed
+CREATE TABLE IF NOT EXISTS ingest_cursors (
+    name VARCHAR(64) PRIMARY KEY,
+    high_water_mark BIGINT NOT NULL,
+    updated_at DATETIME NOT NULL
+);
+
+-- Cache invalidations published by each node and polled by the others, kept for a few minutes
+CREATE TABLE IF NOT EXISTS cache_invalidations (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    cache_name VARCHAR(64) NOT NULL,
+    cache_key VARCHAR(255) NOT NULL,
+    node_id VARCHAR(255) NOT NULL,
+    created_at DATETIME(3) NOT NULL
+);
+
+-- Index for polling recent invalidations and deleting old ones
+CREATE INDEX idx_cache_invalidations_created_at ON cache_invalidations(created_at);
+
+-- Refresh token families, one row per login session holding the only refresh token that may still be used
+CREATE TABLE IF NOT EXISTS refresh_token_families (
+    family_id VARCHAR(36) PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    current_token_id VARCHAR(36) NOT NULL,
+    expires_at DATETIME NOT NULL,
+    revoked BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at DATETIME NOT NULL
+);
+
+-- Notification outbox, every user notification with its per-user sequence number for replay
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    user_id VARCHAR(255) NOT NULL,
+    seq BIGINT NOT NULL,
+    type VARCHAR(32) NOT NULL,
+    payload TEXT NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    acked_at DATETIME(3),
+    PRIMARY KEY (user_id, seq)
+);
+
+-- Index for incremental location index refreshes
+CREATE INDEX idx_medical_info_last_location_update ON medical_info(last_location_update);
+
+-- Cluster-wide leases, held by one node at a time until lease_until (database time)
+CREATE TABLE IF NOT EXISTS scheduler_leases (
+    name VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(255),
+    lease_until DATETIME(3) NOT NULL
+);
+
+-- Earthquake fan-out work, one job per event and user shard, claimed by any node
+CREATE TABLE IF NOT EXISTS fanout_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_id VARCHAR(255) NOT NULL,
+    shard INT NOT NULL,
+    shard_count INT NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    owner VARCHAR(255),
+    claim_token VARCHAR(36),
+    attempts INT NOT NULL DEFAULT 0,
+    lease_until DATETIME(3),
+    created_at DATETIME(3) NOT NULL,
+    completed_at DATETIME(3)
+);
+
+-- Indexes for claiming the oldest runnable job of each shard and finding a claimed job
+CREATE INDEX idx_fanout_jobs_status_shard ON fanout_jobs(status, shard, id);
+CREATE INDEX idx_fanout_jobs_claim_token ON fanout_jobs(claim_token);
+
+-- Baseline safety scripts generated ahead of any event, one per guidance cohort without location
+CREATE TABLE IF NOT EXISTS baseline_guidance (
+    cohort_key CHAR(64) PRIMARY KEY,
+    user_profile TEXT NOT NULL,
+    script TEXT,
+    requested_at DATETIME NOT NULL,
+    generated_at DATETIME,
+    -- Consecutive failed generations, the cohort is skipped until retry_after
+    failed_attempts INT NOT NULL DEFAULT 0,
+    retry_after DATETIME
+);
+
+-- Index for finding scripts never generated (NULL first) or generated the longest ago
+CREATE INDEX idx_baseline_guidance_generated_at ON baseline_guidance(generated_at);
@@ -0,0 +1,174 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiTaskExecutorTest {
+
+    private AiTaskExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void freedPermitsGoToTheHighestPriorityLane() throws Exception {
+        executor = newExecutor(2, 1);
+        Call background = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        Call interactive = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+        background.awaitStarted();
+        interactive.awaitStarted();
+
+        Call queuedBackground = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        Call queuedBroadcast = submit(AiTaskExecutor.Lane.BROADCAST, null);
+        Call queuedInteractive = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+
+        interactive.finish("done");
+        queuedInteractive.awaitStarted();
+        assertFalse(queuedBroadcast.started.isDone());
+
+        background.finish("done");
+        queuedBroadcast.awaitStarted();
+        assertFalse(queuedBackground.started.isDone());
+        assertEquals(1, executor.getQueueDepth(AiTaskExecutor.Lane.BACKGROUND));
+    }
+
+    @Test
+    void reservedPermitsAreOnlyUsedByInteractiveTasks() throws Exception {
+        executor = newExecutor(2, 1);
+        Call broadcast = submit(AiTaskExecutor.Lane.BROADCAST, null);
+        broadcast.awaitStarted();
+
+        Call secondBroadcast = submit(AiTaskExecutor.Lane.BROADCAST, null);
+        assertEquals(1, executor.getQueueDepth(AiTaskExecutor.Lane.BROADCAST));
+
+        Call interactive = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+        interactive.awaitStarted();
+        assertEquals(2, executor.getInFlight());
+        assertFalse(secondBroadcast.started.isDone());
+
+        // The shared permit is handed to the queued broadcast once the first one finishes
+        broadcast.finish("done");
+        secondBroadcast.awaitStarted();
+    }
+
+    @Test
+    void completesWithTheResultOfTheCall() throws Exception {
+        executor = newExecutor(2, 1);
+        Call interactive = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+        interactive.awaitStarted();
+
+        interactive.finish("guidance");
+
+        assertEquals("guidance", interactive.result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void queuedTaskPastItsDeadlineIsDropped() throws Exception {
+        executor = newExecutor(1, 0);
+        Call running = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        running.awaitStarted();
+
+        Call expiring = submit(AiTaskExecutor.Lane.INTERACTIVE, Duration.ofMillis(1));
+        Thread.sleep(20);
+        running.finish("done");
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> expiring.result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertFalse(expiring.started.isDone());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    void cancellingAQueuedTaskRemovesItFromTheQueue() throws Exception {
+        executor = newExecutor(1, 0);
+        Call running = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        running.awaitStarted();
+        Call queued = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        Call next = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        assertEquals(2, executor.getQueueDepth(AiTaskExecutor.Lane.BACKGROUND));
+
+        queued.result.cancel(true);
+        assertEquals(1, executor.getQueueDepth(AiTaskExecutor.Lane.BACKGROUND));
+
+        running.finish("done");
+        next.awaitStarted();
+        assertFalse(queued.started.isDone());
+    }
+
+    @Test
+    void cancellingARunningTaskCancelsItsCallAndReleasesThePermit() throws Exception {
+        executor = newExecutor(1, 0);
+        Call running = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+        running.awaitStarted();
+        Call queued = submit(AiTaskExecutor.Lane.INTERACTIVE, null);
+
+        running.result.cancel(true);
+
+        queued.awaitStarted();
+        assertTrue(running.call.isCancelled());
+        assertEquals(1, executor.getInFlight());
+    }
+
+    @Test
+    void rejectsTasksBeyondTheQueueCapacity() throws Exception {
+        executor = new AiTaskExecutor(new SimpleMeterRegistry(), 1, 0, 1, AiTaskExecutor.RejectionPolicy.ABORT);
+        Call running = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+        running.awaitStarted();
+        submit(AiTaskExecutor.Lane.BACKGROUND, null);
+
+        Call rejected = submit(AiTaskExecutor.Lane.BACKGROUND, null);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> rejected.result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+    }
+
+    private AiTaskExecutor newExecutor(int maxInFlight, int interactiveReserved) {
+        return new AiTaskExecutor(new SimpleMeterRegistry(), maxInFlight, interactiveReserved, 100,
+                AiTaskExecutor.RejectionPolicy.ABORT);
+    }
+
+    private Call submit(AiTaskExecutor.Lane lane, Duration timeout) {
+        Call call = new Call();
+        call.result = executor.submitAsync(lane, timeout, () -> {
+            call.started.complete(null);
+            return call.call;
+        });
+        return call;
+    }
+
+    /**
+     * An AI call completed by the test
+     */
+    private static final class Call {
+
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        private final CompletableFuture<String> call = new CompletableFuture<>();
+        private CompletableFuture<String> result;
+
+        private void awaitStarted() throws Exception {
+            started.get(5, TimeUnit.SECONDS);
+        }
+
+        private void finish(String value) {
+            call.complete(value);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.model.geojson.Feature;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoJsonFeatureReaderTest {
+
+    // Configured like the application's ObjectMapper, unknown properties are ignored
+    private final GeoJsonFeatureReader reader = new GeoJsonFeatureReader(Jackson2ObjectMapperBuilder.json().build());
+
+    @Test
+    void readsFeaturesInBatches() throws IOException {
+        List<List<String>> batches = new ArrayList<>();
+
+        long count = reader.read(input(collection(5)), 2, batch -> batches.add(batch.stream().map(Feature::getId).toList()));
+
+        assertEquals(5, count);
+        assertEquals(List.of(List.of("us1", "us2"), List.of("us3", "us4"), List.of("us5")), batches);
+    }
+
+    @Test
+    void bindsEachFeature() throws IOException {
+        List<Feature> features = new ArrayList<>();
+
+        reader.read(input(collection(1)), 10, features::addAll);
+
+        Feature feature = features.get(0);
+        assertEquals("us1", feature.getId());
+        assertEquals(4.5, feature.getProperties().getMag());
+        assertEquals("Point", feature.getGeometry().getType());
+        assertArrayEquals(new double[] {126.9, 37.5, 10.0}, feature.getGeometry().getCoordinates());
+    }
+
+    @Test
+    void skipsEverythingOutsideTheFeatures() throws IOException {
+        String json = "{\"type\":\"FeatureCollection\","
+                + "\"metadata\":{\"generated\":1700000000000,\"title\":\"USGS\",\"nested\":{\"features\":[{\"id\":\"no\"}]}},"
+                + "\"features\":[" + feature(1) + "],"
+                + "\"bbox\":[-180,-90,0,180,90,700]}";
+        List<String> ids = new ArrayList<>();
+
+        long count = reader.read(input(json), 10, batch -> batch.forEach(feature -> ids.add(feature.getId())));
+
+        assertEquals(1, count);
+        assertEquals(List.of("us1"), ids);
+    }
+
+    @Test
+    void readsAnEmptyCollection() throws IOException {
+        List<Feature> features = new ArrayList<>();
+
+        long count = reader.read(input("{\"type\":\"FeatureCollection\",\"features\":[]}"), 10, features::addAll);
+
+        assertEquals(0, count);
+        assertTrue(features.isEmpty());
+    }
+
+    @Test
+    void rejectsInputThatIsNotAnObject() {
+        assertThrows(IOException.class, () -> reader.read(input("[" + feature(1) + "]"), 10, batch -> { }));
+    }
+
+    @Test
+    void closesTheInput() throws IOException {
+        boolean[] closed = {false};
+        InputStream in = new ByteArrayInputStream(collection(1).getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        reader.read(in, 10, batch -> { });
+
+        assertTrue(closed[0]);
+    }
+
+    private static String collection(int size) {
+        List<String> features = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            features.add(feature(i));
+        }
+        return "{\"type\":\"FeatureCollection\",\"features\":[" + String.join(",", features) + "]}";
+    }
+
+    private static String feature(int number) {
+        return "{\"type\":\"Feature\",\"id\":\"us" + number + "\","
+                + "\"properties\":{\"mag\":4.5,\"place\":\"Seoul\",\"time\":1700000000000,\"unknown\":true},"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[126.9,37.5,10.0]}}";
+    }
+
+    private static InputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,144 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImagePreprocessorExifOrientationTest {
+
+    private static final int SOI = 0xd8;
+    private static final int APP0 = 0xe0;
+    private static final int APP1 = 0xe1;
+    private static final int SOS = 0xda;
+
+    @Test
+    void readsBigEndianOrientation() {
+        byte[] jpeg = jpeg(segment(APP1, exif(false, 0x0112, 6)), segment(SOS, new byte[4]));
+
+        assertEquals(6, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void readsLittleEndianOrientation() {
+        byte[] jpeg = jpeg(segment(APP1, exif(true, 0x0112, 8)), segment(SOS, new byte[4]));
+
+        assertEquals(8, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void skipsSegmentsBeforeTheExifSegment() {
+        byte[] jfif = "JFIF\0\1\1\0\0\1\0\1\0\0".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] jpeg = jpeg(segment(APP0, jfif), segment(APP1, exif(false, 0x0112, 3)), segment(SOS, new byte[4]));
+
+        assertEquals(3, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void defaultsWithoutAnOrientationTag() {
+        byte[] jpeg = jpeg(segment(APP1, exif(false, 0x010f, 6)), segment(SOS, new byte[4]));
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void defaultsWithoutExif() {
+        byte[] jpeg = jpeg(segment(APP0, new byte[14]), segment(SOS, new byte[4]));
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void ignoresExifAfterTheStartOfScan() {
+        byte[] jpeg = jpeg(segment(SOS, new byte[4]), segment(APP1, exif(false, 0x0112, 6)));
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void defaultsForAnOrientationOutOfRange() {
+        byte[] jpeg = jpeg(segment(APP1, exif(false, 0x0112, 9)), segment(SOS, new byte[4]));
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(jpeg));
+    }
+
+    @Test
+    void defaultsForATruncatedSegment() {
+        byte[] jpeg = jpeg(segment(APP1, exif(false, 0x0112, 6)));
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(Arrays.copyOf(jpeg, jpeg.length - 8)));
+    }
+
+    @Test
+    void defaultsForOtherFormats() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(png));
+        assertEquals(1, ImagePreprocessor.ExifOrientation.read(new byte[0]));
+    }
+
+    private static byte[] jpeg(byte[]... segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xff);
+        out.write(SOI);
+        for (byte[] segment : segments) {
+            out.writeBytes(segment);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xff);
+        out.write(marker);
+        // The length counts itself but not the marker
+        writeShort(out, payload.length + 2, false);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    /**
+     * An EXIF payload whose first IFD holds a single SHORT entry
+     */
+    private static byte[] exif(boolean littleEndian, int tag, int value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes((littleEndian ? "II" : "MM").getBytes(StandardCharsets.ISO_8859_1));
+        writeShort(out, 42, littleEndian);
+        // The IFD follows the 8 byte TIFF header
+        writeInt(out, 8, littleEndian);
+        writeShort(out, 1, littleEndian);
+        writeShort(out, tag, littleEndian);
+        // SHORT, one value
+        writeShort(out, 3, littleEndian);
+        writeInt(out, 1, littleEndian);
+        writeShort(out, value, littleEndian);
+        writeShort(out, 0, littleEndian);
+        // No next IFD
+        writeInt(out, 0, littleEndian);
+        return out.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value, boolean littleEndian) {
+        if (littleEndian) {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+        } else {
+            out.write((value >> 8) & 0xff);
+            out.write(value & 0xff);
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value, boolean littleEndian) {
+        if (littleEndian) {
+            writeShort(out, value & 0xffff, true);
+            writeShort(out, (value >> 16) & 0xffff, true);
+        } else {
+            writeShort(out, (value >> 16) & 0xffff, false);
+            writeShort(out, value & 0xffff, false);
+        }
+    }
+}
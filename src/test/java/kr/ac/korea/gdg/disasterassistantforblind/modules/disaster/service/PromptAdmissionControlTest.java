@@ -0,0 +1,76 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PromptAdmissionControlTest {
+
+    // 6 requests per minute with a burst of 3
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private PromptAdmissionControl control;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AiTaskExecutor aiTaskExecutor = new AiTaskExecutor(meterRegistry, 2, 1, 10, AiTaskExecutor.RejectionPolicy.ABORT);
+        control = new PromptAdmissionControl(aiTaskExecutor, meterRegistry, 6, 3, 64, 32,
+                Duration.ofSeconds(20), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void allowsABurstThenWaitsOneInterval() {
+        PromptAdmissionControl.TokenBucket bucket = control.new TokenBucket();
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(INTERVAL, bucket.tryAcquire(now));
+    }
+
+    @Test
+    void rejectedRequestsDoNotTakeATokenOrExtendTheWait() {
+        PromptAdmissionControl.TokenBucket bucket = control.new TokenBucket();
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(now);
+        }
+
+        assertEquals(INTERVAL, bucket.tryAcquire(now));
+        assertEquals(INTERVAL, bucket.tryAcquire(now));
+        assertEquals(INTERVAL / 2, bucket.tryAcquire(now + INTERVAL / 2));
+        assertEquals(0, bucket.tryAcquire(now + INTERVAL));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        PromptAdmissionControl.TokenBucket bucket = control.new TokenBucket();
+        long now = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(now);
+        }
+
+        long later = now + 2 * INTERVAL;
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(INTERVAL, bucket.tryAcquire(later));
+    }
+
+    @Test
+    void idleBucketDoesNotSaveMoreThanTheBurst() {
+        PromptAdmissionControl.TokenBucket bucket = control.new TokenBucket();
+        long later = System.nanoTime() + TimeUnit.HOURS.toNanos(1);
+
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(INTERVAL, bucket.tryAcquire(later));
+    }
+}
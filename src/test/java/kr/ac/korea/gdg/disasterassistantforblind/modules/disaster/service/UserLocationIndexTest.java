@@ -0,0 +1,99 @@
+package kr.ac.korea.gdg.disasterassistantforblind.modules.disaster.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserLocationIndexTest {
+
+    private UserLocationIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // The database is only read on startup and refresh
+        index = new UserLocationIndex(null, 1.0);
+    }
+
+    @Test
+    void findsUsersInsideTheRadiusOnly() {
+        index.update("seoul", 37.5665, 126.9780);
+        index.update("incheon", 37.4563, 126.7052);
+        index.update("busan", 35.1796, 129.0756);
+
+        assertEquals(Set.of("seoul", "incheon"), index.findUserIdsWithin(37.5665, 126.9780, 50));
+        assertEquals(Set.of("seoul", "incheon", "busan"), index.findUserIdsWithin(37.5665, 126.9780, 400));
+        assertEquals(Set.of(), index.findUserIdsWithin(33.4996, 126.5312, 50));
+    }
+
+    @Test
+    void findsUsersAcrossCellBoundaries() {
+        // Less than 20 km apart but in different 1 degree cells
+        index.update("north", 38.05, 127.0);
+        index.update("south", 37.95, 127.0);
+
+        assertEquals(Set.of("north", "south"), index.findUserIdsWithin(38.0, 127.0, 20));
+    }
+
+    @Test
+    void findsUsersAcrossTheAntimeridian() {
+        index.update("east", 0.0, 179.9);
+        index.update("west", 0.0, -179.9);
+
+        assertEquals(Set.of("east", "west"), index.findUserIdsWithin(0.0, -179.95, 50));
+        assertEquals(2, index.findCellIdsWithin(0.0, 179.95, 50).size());
+    }
+
+    @Test
+    void findsUsersAroundAPole() {
+        index.update("pole", 89.5, 170.0);
+
+        assertEquals(Set.of("pole"), index.findUserIdsWithin(89.9, 0.0, 100));
+    }
+
+    @Test
+    void movedUserIsOnlyFoundAtItsLatestPosition() {
+        index.update("user", 37.5665, 126.9780);
+        index.update("user", 35.1796, 129.0756);
+
+        assertEquals(Set.of(), index.findUserIdsWithin(37.5665, 126.9780, 50));
+        assertEquals(Set.of("user"), index.findUserIdsWithin(35.1796, 129.0756, 50));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removedUserIsNotFound() {
+        index.update("user", 37.5665, 126.9780);
+        index.remove("user");
+
+        assertEquals(Set.of(), index.findUserIdsWithin(37.5665, 126.9780, 50));
+    }
+
+    @Test
+    void ignoresInvalidPositions() {
+        index.update("user", 91.0, 0.0);
+        index.update("user", 0.0, 181.0);
+        index.update("user", null, 0.0);
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void findsTheCellsOfUsersInsideTheRadius() {
+        index.update("seoul", 37.5665, 126.9780);
+        index.update("busan", 35.1796, 129.0756);
+
+        assertEquals(Set.of(index.cellId(37.5665, 126.9780)), index.findCellIdsWithin(37.5665, 126.9780, 50));
+    }
+
+    @Test
+    void measuresGreatCircleDistances() {
+        double seoulToBusan = UserLocationIndex.distanceKm(37.5665, 126.9780, 35.1796, 129.0756);
+
+        assertTrue(seoulToBusan > 320 && seoulToBusan < 330, "Seoul to Busan: " + seoulToBusan);
+        assertEquals(0.0, UserLocationIndex.distanceKm(10.0, 20.0, 10.0, 20.0), 1e-9);
+    }
+}